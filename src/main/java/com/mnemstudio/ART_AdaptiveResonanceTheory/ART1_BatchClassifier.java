@@ -0,0 +1,287 @@
+package com.mnemstudio.ART_AdaptiveResonanceTheory;
+
+/**
+ * Adaptive Resonance Theory
+ *
+ * Read-only ART1 classifier for scoring many inputs against trained weights, 64 inputs at a time.
+ *
+ * It is built from the bw and tw of a trained network (the bw[M][N], tw[M][N] arrays of ART1_Example2, or an
+ * ART1_Network) and does no learning: each input gets the F2 node that the reset loop of ART1() would settle on, and
+ * all-zero inputs, which every node rejects, get -1.
+ *
+ * ART1 only ever produces F2 rows where tw is 0 or 1 and bw is one value c on the 1's of tw and 0 elsewhere (the
+ * initial weights are the case tw = 1 everywhere, c = 1 / (1 + N)). The net input of such a node is c added once per
+ * component where both the input and tw are 1, the same double as the dense sum, and its vigilance test only needs the
+ * same overlap count. The constructor checks that every row has this form.
+ *
+ * The inputs of a batch are transposed into bit slices: slice[j] holds component j of all 64 inputs. The overlaps of
+ * one node with all 64 inputs are counted by adding up the slices of the node's tw 1's in bit-sliced counters (a
+ * ripple-carry adder working on 64 lanes at once), so each tw 1 costs a few word operations for the whole batch
+ * instead of one multiply-add per input. The reset loop is also gone: vigilance depends only on the node and the
+ * input, so the node the loop ends on is the one with the largest net input (lowest node on ties, as in maximum())
+ * among those that pass the test.
+ *
+ * Scratch space is allocated per classify() call, so one classifier can be shared by any number of threads.
+ *
+ */
+public class ART1_BatchClassifier
+{
+	private static final int LANES = 64;
+
+	private final int n; // Number of components in an input vector.
+	private final int m; // Number of F2 nodes.
+	private final double vigilance;
+
+	// Components where tw of node i is 1: support[supportStart[i] .. supportStart[i + 1]).
+	private final int supportStart[];
+	private final int support[];
+
+	// Net input of node i at overlap k: sum[supportStart[i] + i + k], the bw value added k times.
+	private final double sum[];
+
+	private final int planes; // Bit-sliced counter width, enough for the largest overlap.
+
+	/**
+	 * A classifier for the weights of ART1_Example2: bw[M][N] and tw[M][N].
+	 */
+	public ART1_BatchClassifier(double[][] bw, double[][] tw, double vigilance)
+	{
+		this.m = bw.length;
+		this.n = m > 0 ? bw[0].length : 0;
+		this.vigilance = vigilance;
+
+		supportStart = new int[m + 1];
+		for (int i = 0; i < m; i++)
+		{
+			int ones = 0;
+			for (int j = 0; j < n; j++)
+			{
+				if (tw[i][j] == 1.0)
+				{
+					ones += 1;
+				}
+				else if (tw[i][j] != 0.0)
+				{
+					throw new IllegalArgumentException("tw[" + i + "][" + j + "] is " + tw[i][j] + ", not 0 or 1");
+				}
+			} // j
+			supportStart[i + 1] = supportStart[i] + ones;
+		} // i
+
+		support = new int[supportStart[m]];
+		sum = new double[supportStart[m] + m];
+		int widest = 0;
+		for (int i = 0; i < m; i++)
+		{
+			int position = supportStart[i];
+			double choice = 0.0;
+			for (int j = 0; j < n; j++)
+			{
+				if (tw[i][j] == 1.0)
+				{
+					if (position > supportStart[i] && bw[i][j] != choice)
+					{
+						throw new IllegalArgumentException("bw row " + i + " is not the same on all the 1's of tw");
+					}
+					choice = bw[i][j];
+					support[position] = j;
+					position += 1;
+				}
+				else if (bw[i][j] != 0.0)
+				{
+					throw new IllegalArgumentException("bw[" + i + "][" + j + "] is not 0 where tw is 0");
+				}
+			} // j
+
+			int ones = supportStart[i + 1] - supportStart[i];
+			int base = supportStart[i] + i;
+			sum[base] = 0.0;
+			for (int k = 1; k <= ones; k++)
+			{
+				sum[base + k] = sum[base + k - 1] + choice;
+			}
+			widest = Math.max(widest, ones);
+		} // i
+
+		planes = 32 - Integer.numberOfLeadingZeros(widest);
+		return;
+	}
+
+	/**
+	 * A classifier for the committed F2 nodes of a network plus its uncommitted node, which gets the number
+	 * getCommitted() just as in ART1_Network.present(pattern, false).
+	 */
+	public ART1_BatchClassifier(ART1_Network network)
+	{
+		this(weights(network, true), weights(network, false), network.getVigilance());
+		return;
+	}
+
+	private static double[][] weights(ART1_Network network, boolean bottomUp)
+	{
+		int nodes = network.getCommitted() + 1;
+		double weight[][] = new double[nodes][network.getInputLength()];
+		for (int i = 0; i < nodes; i++)
+		{
+			for (int j = 0; j < weight[i].length; j++)
+			{
+				weight[i][j] = bottomUp ? network.getBottomUpWeight(i, j) : network.getTopDownWeight(i, j);
+			}
+		} // i
+		return weight;
+	}
+
+	/**
+	 * The F2 node of one input pattern, or -1 if every node rejects it.
+	 */
+	public int classify(int[] pattern)
+	{
+		return classify(new int[][]
+		{ pattern })[0];
+	}
+
+	/**
+	 * The F2 node of every input pattern, or -1 where every node rejects it. Non-zero components count as 1.
+	 */
+	public int[] classify(int[][] patterns)
+	{
+		int membership[] = new int[patterns.length];
+
+		long slice[] = new long[n];
+		long counter[] = new long[Math.max(1, planes)];
+		int need[] = new int[LANES];
+		double best[] = new double[LANES];
+
+		for (int first = 0; first < patterns.length; first += LANES)
+		{
+			int lanes = Math.min(LANES, patterns.length - first);
+
+			// Transpose the batch: bit b of slice[j] is component j of input first + b.
+			for (int j = 0; j < n; j++)
+			{
+				slice[j] = 0L;
+			}
+			for (int b = 0; b < lanes; b++)
+			{
+				int inputSum = 0;
+				for (int j = 0; j < n; j++)
+				{
+					if (patterns[first + b][j] != 0)
+					{
+						slice[j] |= 1L << b;
+						inputSum += 1;
+					}
+				} // j
+				need[b] = minimumOverlap(inputSum);
+				membership[first + b] = -1;
+				best[b] = -1.0;
+			} // b
+
+			for (int i = 0; i < m; i++)
+			{
+				// Bit-sliced counters: bit b of counter[p] is bit p of the overlap with input b.
+				for (int p = 0; p < counter.length; p++)
+				{
+					counter[p] = 0L;
+				}
+				for (int s = supportStart[i]; s < supportStart[i + 1]; s++)
+				{
+					long carry = slice[support[s]];
+					for (int p = 0; carry != 0L; p++)
+					{
+						long next = counter[p] & carry;
+						counter[p] ^= carry;
+						carry = next;
+					}
+				} // s
+
+				int base = supportStart[i] + i;
+				for (int b = 0; b < lanes; b++)
+				{
+					int overlap = 0;
+					for (int p = 0; p < planes; p++)
+					{
+						overlap |= (int) ((counter[p] >>> b) & 1L) << p;
+					}
+					// Strictly larger, so that ties go to the lowest node.
+					if (overlap >= need[b] && sum[base + overlap] > best[b])
+					{
+						best[b] = sum[base + overlap];
+						membership[first + b] = i;
+					}
+				} // b
+			} // i
+		} // first
+		return membership;
+	}
+
+	private int minimumOverlap(int inputSum)
+	{
+		// The smallest activationSum that testForReset() accepts; the test is monotone in it.
+		for (int activationSum = 0; activationSum <= inputSum; activationSum++)
+		{
+			if ((double) activationSum / (double) inputSum >= vigilance)
+			{
+				return activationSum;
+			}
+		}
+		return Integer.MAX_VALUE;
+	}
+
+	public int getNodes()
+	{
+		return m;
+	}
+
+	public int getInputLength()
+	{
+		return n;
+	}
+
+	public static void main(String[] args)
+	{
+		int n = args.length > 0 ? Integer.parseInt(args[0]) : 256;
+		int sources = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+		int inputs = args.length > 2 ? Integer.parseInt(args[2]) : 50000;
+		double vigilance = 0.7;
+
+		int pattern[][] = ART1_NetworkBenchmark.makePatterns(5000 + inputs, n, sources, 3L);
+		ART1_Network art = new ART1_Network(n, vigilance);
+		for (int i = 0; i < 5000; i++)
+		{
+			art.present(pattern[i], true);
+		}
+
+		int archive[][] = new int[inputs][];
+		System.arraycopy(pattern, 5000, archive, 0, inputs);
+
+		long start = System.nanoTime();
+		int expected[] = new int[inputs];
+		for (int i = 0; i < inputs; i++)
+		{
+			expected[i] = art.present(archive[i], false);
+		}
+		long singleTime = System.nanoTime() - start;
+
+		ART1_BatchClassifier classifier = new ART1_BatchClassifier(art);
+		start = System.nanoTime();
+		int membership[] = classifier.classify(archive);
+		long batchTime = System.nanoTime() - start;
+
+		int mismatches = 0;
+		for (int i = 0; i < inputs; i++)
+		{
+			if (membership[i] != expected[i])
+			{
+				mismatches += 1;
+			}
+		}
+
+		System.out.println("n = " + n + ", F2 nodes = " + classifier.getNodes() + ", inputs = " + inputs);
+		System.out.println(String.format("One at a time: %8.2f us/input", singleTime / 1000.0 / inputs));
+		System.out.println(String.format("Bit-sliced:    %8.2f us/input", batchTime / 1000.0 / inputs));
+		System.out.println("Mismatches: " + mismatches);
+		return;
+	}
+
+}
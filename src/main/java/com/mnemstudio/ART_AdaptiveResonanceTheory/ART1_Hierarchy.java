@@ -0,0 +1,465 @@
+package com.mnemstudio.ART_AdaptiveResonanceTheory;
+
+import java.util.Arrays;
+
+/**
+ * Adaptive Resonance Theory
+ *
+ * ART1 over a list of vigilance levels at once, giving a cluster tree instead of one flat membership[].
+ *
+ * Level 0 is an ART1 network with the lowest vigilance that sees every input, exactly like ART1_Network. Each node of
+ * level l has its own child network at the next vigilance, which only sees the inputs that resonated with that node.
+ * An input thus ends up on one path from the root down, one node per level, and the clusters of a finer level are
+ * nested inside those of the coarser ones. Level 0 gives the same memberships as a separate ART1_Network at its
+ * vigilance; the finer levels differ from flat runs at their vigilance, since a flat run can put inputs from two
+ * coarse clusters together.
+ *
+ * All nodes of all levels share one set of component lists (the committed nodes with tw = 1 at each component), as in
+ * ART1_Network, so a single walk over the lists of the input's 1's gives the overlap of the input with every node of
+ * the tree. The net input of the uncommitted nodes, which is the same at every level, is computed once too. Each level
+ * then only looks at the children of the node chosen one level up. As in ART1_BatchClassifier, the vigilance test of
+ * a node depends only on the node and the input, so the reset loop ends on the node with the largest net input among
+ * those that pass (the first committed on ties, and the uncommitted node last).
+ *
+ */
+public class ART1_Hierarchy
+{
+	private static final int INITIAL_CAPACITY = 16;
+
+	private final int n; // Number of components in an input vector.
+	private final double vigilance[]; // Ascending, one per level.
+
+	private int nodes = 0;
+	private int capacity = 0;
+
+	private int level[] = null;
+	private int parent[] = null; // -1 at level 0.
+	private int firstChild[] = null; // Children in the order they were committed.
+	private int lastChild[] = null;
+	private int nextSibling[] = null;
+	private int rootFirst = -1; // The level 0 nodes.
+	private int rootLast = -1;
+
+	private double tw[] = null; // Top-down weights, row i at [i * n, (i + 1) * n).
+	private double choice[] = null; // The non-zero bw value of each node, 2 / (1 + |tw|).
+
+	// Nodes with tw = 1 at component j: posting[j * capacity .. j * capacity + postingSize[j]).
+	private int posting[] = null;
+	private int postingSize[] = null;
+	private int postingIndex[] = null;
+
+	private int f1a[] = null; // Input layer.
+	private int active[] = null; // Components where f1a is 1, ascending.
+	private int activeCount = 0;
+	private int overlap[] = null;
+	private int touched[] = null;
+	private int touchedCount = 0;
+
+	public ART1_Hierarchy(int n, double[] vigilance)
+	{
+		for (int l = 1; l < vigilance.length; l++)
+		{
+			if (vigilance[l] < vigilance[l - 1])
+			{
+				throw new IllegalArgumentException("Vigilance levels must be ascending: " + Arrays.toString(vigilance));
+			}
+		}
+		this.n = n;
+		this.vigilance = vigilance.clone();
+
+		f1a = new int[n];
+		active = new int[n];
+		postingSize = new int[n];
+		level = new int[0];
+		parent = new int[0];
+		firstChild = new int[0];
+		lastChild = new int[0];
+		nextSibling = new int[0];
+		tw = new double[0];
+		choice = new double[0];
+		posting = new int[0];
+		postingIndex = new int[0];
+		overlap = new int[0];
+		touched = new int[0];
+		ensureCapacity(INITIAL_CAPACITY);
+		return;
+	}
+
+	/**
+	 * Presents one input pattern and writes its node at every level to path[0 .. getLevels() - 1]. Non-zero components
+	 * count as 1. When learn is true every node on the path learns the input, as in updateWeights() of the examples,
+	 * committing new nodes where needed. An all-zero pattern gets -1 everywhere, and so do the levels from which a
+	 * pattern would start new clusters when learn is false.
+	 */
+	public void present(int[] pattern, boolean learn, int[] path)
+	{
+		for (int k = 0; k < activeCount; k++)
+		{
+			f1a[active[k]] = 0;
+		}
+		activeCount = 0;
+
+		// Input pattern() to F1 layer.
+		for (int i = 0; i < n; i++)
+		{
+			if (pattern[i] != 0)
+			{
+				f1a[i] = 1;
+				active[activeCount] = i;
+				activeCount += 1;
+			}
+		}
+		int inputSum = activeCount;
+
+		// Overlap of the input with every node of the tree.
+		touchedCount = 0;
+		for (int k = 0; k < activeCount; k++)
+		{
+			int base = active[k] * capacity;
+			int size = postingSize[active[k]];
+			for (int p = 0; p < size; p++)
+			{
+				int node = posting[base + p];
+				if (overlap[node] == 0)
+				{
+					touched[touchedCount] = node;
+					touchedCount += 1;
+				}
+				overlap[node] += 1;
+			} // p
+		} // k
+
+		// Every uncommitted node has bw = 1 / (1 + n).
+		double uncommitted = 0.0;
+		for (int k = 0; k < activeCount; k++)
+		{
+			uncommitted += (1.0 / (1.0 + n)) * (double) f1a[active[k]];
+		}
+
+		int up = -1;
+		for (int l = 0; l < vigilance.length; l++)
+		{
+			path[l] = -1;
+		}
+		for (int l = 0; l < vigilance.length && inputSum > 0; l++)
+		{
+			int winner = -1;
+			double best = -1.0;
+			int child = up < 0 ? rootFirst : firstChild[up];
+			while (child >= 0)
+			{
+				if (overlap[child] > 0 && (double) overlap[child] / (double) inputSum >= vigilance[l])
+				{
+					double f2 = 0.0;
+					for (int k = 0; k < overlap[child]; k++)
+					{
+						f2 += choice[child];
+					}
+					if (f2 > best)
+					{
+						best = f2;
+						winner = child;
+					}
+				}
+				child = nextSibling[child];
+			}
+
+			// The uncommitted node comes after the committed ones on ties, and accepts any non-empty pattern.
+			boolean fresh = winner < 0 || uncommitted > best;
+			if (!learn && fresh)
+			{
+				break; // A new cluster at this level, and so at the levels below.
+			}
+			if (fresh)
+			{
+				winner = commitNode(l, up);
+			}
+			updateWeights(winner, fresh);
+			path[l] = winner;
+			up = winner;
+		} // l
+
+		for (int t = 0; t < touchedCount; t++)
+		{
+			overlap[touched[t]] = 0;
+		}
+		return;
+	}
+
+	/**
+	 * Presents every pattern, learning, and returns membership[level][pattern].
+	 */
+	public int[][] cluster(int[][] patterns)
+	{
+		int membership[][] = new int[vigilance.length][patterns.length];
+		int path[] = new int[vigilance.length];
+		for (int vecNum = 0; vecNum < patterns.length; vecNum++)
+		{
+			present(patterns[vecNum], true, path);
+			for (int l = 0; l < vigilance.length; l++)
+			{
+				membership[l][vecNum] = path[l];
+			}
+		} // vecNum
+		return membership;
+	}
+
+	private int commitNode(int l, int up)
+	{
+		if (nodes == capacity)
+		{
+			ensureCapacity(capacity * 2);
+		}
+		int node = nodes;
+		nodes += 1;
+
+		level[node] = l;
+		parent[node] = up;
+		firstChild[node] = -1;
+		lastChild[node] = -1;
+		nextSibling[node] = -1;
+		if (up < 0)
+		{
+			if (rootLast < 0)
+			{
+				rootFirst = node;
+			}
+			else
+			{
+				nextSibling[rootLast] = node;
+			}
+			rootLast = node;
+		}
+		else
+		{
+			if (lastChild[up] < 0)
+			{
+				firstChild[up] = node;
+			}
+			else
+			{
+				nextSibling[lastChild[up]] = node;
+			}
+			lastChild[up] = node;
+		}
+		return node;
+	}
+
+	private void updateWeights(int node, boolean fresh)
+	{
+		int base = node * n;
+		if (fresh)
+		{
+			// An uncommitted node has tw = 1 everywhere, so f1b is the input itself.
+			for (int k = 0; k < activeCount; k++)
+			{
+				tw[base + active[k]] = 1.0;
+				addPosting(active[k], node);
+			}
+			choice[node] = (2.0 * 1.0) / (1.0 + (double) activeCount);
+		}
+		else
+		{
+			// f1b = f1a AND tw; tw keeps only the components where the input is 1.
+			for (int i = 0; i < n; i++)
+			{
+				if (tw[base + i] == 1.0 && f1a[i] == 0)
+				{
+					tw[base + i] = 0.0;
+					removePosting(i, node);
+				}
+			}
+			choice[node] = (2.0 * 1.0) / (1.0 + (double) overlap[node]);
+		}
+		return;
+	}
+
+	private void addPosting(int i, int node)
+	{
+		int size = postingSize[i];
+		posting[i * capacity + size] = node;
+		postingIndex[node * n + i] = size;
+		postingSize[i] = size + 1;
+		return;
+	}
+
+	private void removePosting(int i, int node)
+	{
+		int last = postingSize[i] - 1;
+		int position = postingIndex[node * n + i];
+		int moved = posting[i * capacity + last];
+		posting[i * capacity + position] = moved;
+		postingIndex[moved * n + i] = position;
+		postingSize[i] = last;
+		return;
+	}
+
+	/**
+	 * Makes room for the given number of nodes over all levels, so that learning does not allocate until there are more.
+	 */
+	public void ensureCapacity(int size)
+	{
+		if (size > capacity)
+		{
+			int newPosting[] = new int[n * size];
+			for (int i = 0; i < n; i++)
+			{
+				System.arraycopy(posting, i * capacity, newPosting, i * size, postingSize[i]);
+			}
+			posting = newPosting;
+
+			capacity = size;
+			level = Arrays.copyOf(level, capacity);
+			parent = Arrays.copyOf(parent, capacity);
+			firstChild = Arrays.copyOf(firstChild, capacity);
+			lastChild = Arrays.copyOf(lastChild, capacity);
+			nextSibling = Arrays.copyOf(nextSibling, capacity);
+			tw = Arrays.copyOf(tw, capacity * n);
+			choice = Arrays.copyOf(choice, capacity);
+			postingIndex = Arrays.copyOf(postingIndex, capacity * n);
+			overlap = Arrays.copyOf(overlap, capacity);
+			touched = Arrays.copyOf(touched, capacity);
+		}
+		return;
+	}
+
+	public int getLevels()
+	{
+		return vigilance.length;
+	}
+
+	public double getVigilance(int l)
+	{
+		return vigilance[l];
+	}
+
+	/**
+	 * Number of nodes over all levels.
+	 */
+	public int getNodes()
+	{
+		return nodes;
+	}
+
+	public int getLevel(int node)
+	{
+		return level[node];
+	}
+
+	public int getParent(int node)
+	{
+		return parent[node];
+	}
+
+	public double getTopDownWeight(int node, int i)
+	{
+		return tw[node * n + i];
+	}
+
+	public void printTree()
+	{
+		for (int node = rootFirst; node >= 0; node = nextSibling[node])
+		{
+			printNode(node);
+		}
+		return;
+	}
+
+	private void printNode(int node)
+	{
+		StringBuilder line = new StringBuilder();
+		for (int l = 0; l < level[node]; l++)
+		{
+			line.append("    ");
+		}
+		line.append("#").append(node).append(" (vigilance ").append(vigilance[level[node]]).append("): ");
+		for (int i = 0; i < n; i++)
+		{
+			line.append((int) tw[node * n + i]);
+		}
+		System.out.println(line);
+		for (int child = firstChild[node]; child >= 0; child = nextSibling[child])
+		{
+			printNode(child);
+		}
+		return;
+	}
+
+	public static void main(String[] args)
+	{
+		// The patterns of ART1_Example1.
+		int pattern[][] = new int[][]
+		{
+		{ 1, 1, 0, 0 },
+		{ 0, 0, 0, 1 },
+		{ 1, 0, 0, 0 },
+		{ 0, 0, 1, 1 },
+		{ 0, 1, 0, 0 },
+		{ 0, 0, 1, 0 },
+		{ 1, 0, 1, 0 } };
+
+		ART1_Hierarchy tree = new ART1_Hierarchy(4, new double[]
+		{ 0.3, 0.6, 0.9 });
+		int membership[][] = tree.cluster(pattern);
+		for (int vecNum = 0; vecNum < pattern.length; vecNum++)
+		{
+			System.out.println("Vector #" + vecNum + " belongs to clusters " + membership[0][vecNum] + " > " + membership[1][vecNum] + " > "
+					+ membership[2][vecNum]);
+		}
+		System.out.println();
+		tree.printTree();
+
+		// One pass over the levels against one ART1_Network run per level, and level 0 against its flat run.
+		int n = 128;
+		double levels[] = new double[]
+		{ 0.3, 0.5, 0.7, 0.9 };
+		int inputs[][] = ART1_NetworkBenchmark.makePatterns(20000, n, 500, 5L);
+
+		long start = System.nanoTime();
+		int flat[] = new int[inputs.length];
+		for (int l = 0; l < levels.length; l++)
+		{
+			ART1_Network art = new ART1_Network(n, levels[l]);
+			for (int i = 0; i < inputs.length; i++)
+			{
+				int cluster = art.present(inputs[i], true);
+				if (l == 0)
+				{
+					flat[i] = cluster;
+				}
+			}
+		} // l
+		long flatTime = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		ART1_Hierarchy hierarchy = new ART1_Hierarchy(n, levels);
+		int nested[][] = hierarchy.cluster(inputs);
+		long treeTime = System.nanoTime() - start;
+
+		// Level 0 nodes are numbered in commit order among all nodes; renumber them 0, 1, ... as in the flat run.
+		int rank[] = new int[hierarchy.getNodes()];
+		int roots = 0;
+		for (int node = 0; node < hierarchy.getNodes(); node++)
+		{
+			if (hierarchy.getLevel(node) == 0)
+			{
+				rank[node] = roots;
+				roots += 1;
+			}
+		}
+		int mismatches = 0;
+		for (int i = 0; i < inputs.length; i++)
+		{
+			if (rank[nested[0][i]] != flat[i])
+			{
+				mismatches += 1;
+			}
+		}
+		System.out.println("\n" + levels.length + " levels, " + inputs.length + " inputs, " + hierarchy.getNodes() + " nodes in the tree");
+		System.out.println(String.format("One ART1_Network per level: %d ms", flatTime / 1000000));
+		System.out.println(String.format("ART1_Hierarchy:             %d ms", treeTime / 1000000));
+		System.out.println("Level 0 mismatches against its flat run: " + mismatches);
+		return;
+	}
+
+}
@@ -0,0 +1,613 @@
+package com.mnemstudio.ART_AdaptiveResonanceTheory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import com.mnemstudio.dataset.BitDataset;
+
+/**
+ * Adaptive Resonance Theory
+ *
+ * The ART1 network of ART1_Example1 and ART1_Example2 (after Fausett, and Carpenter and Grossberg) with an F2 layer
+ * that grows on demand.
+ *
+ * The examples allocate a fixed number of F2 nodes, and the reset loop in their ART1() function spins forever once
+ * vigilance has rejected every one of them. Here only the committed nodes (those that have learned a pattern) are
+ * stored, in flat row-major arrays that double in size when full. All uncommitted nodes have the same initial weights,
+ * bw = 1 / (1 + n) and tw = 1, so they are represented by a single extra F2 node at index "committed"; choosing it
+ * commits it and the layer grows by one.
+ *
+ * Each search visits a node at most once: an inhibited node is never tested again, and the uncommitted node accepts
+ * any non-empty input, so the reset loop ends after at most committed + 1 tests. With enough nodes the results are
+ * the same as ART1_Example2; an empty input pattern cannot resonate with anything and gets cluster -1.
+ *
+ * The examples find the next candidate after a reset by running maximum() over the whole F2 layer again, which is
+ * O(M^2) per input when vigilance rejects many nodes. Here the F2 activations of each input are put into a binary
+ * max-heap once (O(M)), ordered by activation and then by node number so ties go to the lowest node as in maximum(),
+ * and every reset just pops the next candidate in O(log M). setOrderedSearch(false) switches back to the rescan, for
+ * comparison in ART1_NetworkBenchmark.
+ *
+ * A network is an online clusterer: present() takes one binary input at a time, as a dense 0/1 pattern or as the
+ * ascending indices of its 1's, returns the cluster straight away and learns from it. The F2 layer is not computed as a
+ * dense n x M product. updateWeights() makes every bw row equal to 2 / (1 + |tw|) wherever tw is 1 and 0 elsewhere, so
+ * a node's net input is that value added once per component where both the input and tw are 1 - the same additions, in
+ * the same order, as the dense loop, and so the same double. For each input component the network keeps a list of the
+ * committed nodes whose tw is 1 there; walking the lists of the input's 1's gives every node's overlap at once. Nodes
+ * with no overlap have a net input of 0, below the uncommitted node, which accepts any non-empty input, so they are
+ * never candidates at all.
+ *
+ * Nothing is allocated per input except when the F2 layer has to grow, and ensureCapacity() reserves room up front.
+ * ART1_OnlineBenchmark reports per-input latencies.
+ *
+ * A network is not thread-safe, but publish() hands out its current weights as an immutable ART1_Snapshot that any
+ * number of threads can classify against while this one goes on learning. The network notes which nodes
+ * updateWeights() changed since the last publish(), and only their rows are copied; see ART1_Snapshot.
+ *
+ */
+public class ART1_Network
+{
+	private static final int INITIAL_CAPACITY = 16;
+
+	private final int n; // Number of components in an input vector.
+	private final double vigilance;
+
+	private int committed = 0; // Committed F2 nodes; node "committed" is the uncommitted one.
+	private int capacity = 0;
+
+	private double bw[] = null; // Bottom-up weights, row i at [i * n, (i + 1) * n).
+	private double tw[] = null; // Top-down weights, same layout.
+	private double choice[] = null; // The non-zero bw value of each committed node, 2 / (1 + |tw|).
+
+	// Committed nodes with tw = 1 at component j: posting[j * capacity .. j * capacity + postingSize[j]).
+	// postingIndex[i * n + j] is the position of node i in that list.
+	private int posting[] = null;
+	private int postingSize[] = null;
+	private int postingIndex[] = null;
+
+	private int f1a[] = null; // Input layer.
+	private int f1b[] = null; // Interface layer.
+	private int active[] = null; // Components where f1a is 1, ascending.
+	private int activeCount = 0;
+	private double f2[] = null; // Net input of the candidate nodes.
+
+	// Candidate F2 nodes of the current input and their overlap |f1a AND tw|.
+	private int candidate[] = null;
+	private int candidates = 0;
+	private int overlap[] = null;
+
+	// Candidates still to be tested, a max-heap on (f2 value, lowest node first).
+	private int heap[] = null;
+	private int heapSize = 0;
+	private boolean orderedSearch = true;
+
+	private long resets = 0;
+
+	// Nodes whose weights changed since the last publish(), and the latest published snapshot.
+	private boolean changed[] = null;
+	private int changedList[] = null;
+	private int changedCount = 0;
+	private volatile ART1_Snapshot snapshot = null;
+
+	private int inputSum = 0;
+	private int activationSum = 0;
+
+	public ART1_Network(int n, double vigilance)
+	{
+		this(n, vigilance, INITIAL_CAPACITY);
+		return;
+	}
+
+	public ART1_Network(int n, double vigilance, int initialCapacity)
+	{
+		this.n = n;
+		this.vigilance = vigilance;
+
+		f1a = new int[n];
+		f1b = new int[n];
+		active = new int[n];
+		postingSize = new int[n];
+		bw = new double[0];
+		tw = new double[0];
+		choice = new double[0];
+		posting = new int[0];
+		postingIndex = new int[0];
+		changed = new boolean[0];
+		changedList = new int[0];
+		snapshot = ART1_Snapshot.empty(n, vigilance);
+		ensureCapacity(Math.max(1, initialCapacity));
+		return;
+	}
+
+	/**
+	 * Presents one input pattern and returns the F2 node it resonates with, or -1 for an all-zero pattern. Non-zero
+	 * components count as 1. When learn is true the winning node's weights are updated as in updateWeights() of the
+	 * examples, committing it if necessary.
+	 */
+	public int present(int[] pattern, boolean learn)
+	{
+		clearInput();
+
+		// Input pattern() to F1 layer.
+		for (int i = 0; i < n; i++)
+		{
+			if (pattern[i] != 0)
+			{
+				f1a[i] = 1;
+				active[activeCount] = i;
+				activeCount += 1;
+			}
+		}
+		return search(learn);
+	}
+
+	/**
+	 * Same as present(int[], boolean) for row "row" of a BitDataset, read straight from its mapping.
+	 */
+	public int present(BitDataset data, int row, boolean learn)
+	{
+		if (data.getColumns() != n)
+		{
+			throw new IllegalArgumentException("Dataset rows have " + data.getColumns() + " components, the network " + n);
+		}
+		clearInput();
+		activeCount = data.ones(row, active);
+		for (int k = 0; k < activeCount; k++)
+		{
+			f1a[active[k]] = 1;
+		}
+		return search(learn);
+	}
+
+	/**
+	 * Same as present(int[], boolean) for a pattern given as the indices of its first "count" 1's, in ascending order.
+	 */
+	public int present(int[] ones, int count, boolean learn)
+	{
+		clearInput();
+
+		for (int k = 0; k < count; k++)
+		{
+			int i = ones[k];
+			if (k > 0 && i <= ones[k - 1])
+			{
+				throw new IllegalArgumentException("Indices must be ascending: " + ones[k - 1] + ", " + i);
+			}
+			f1a[i] = 1;
+			active[k] = i;
+		}
+		activeCount = count;
+		return search(learn);
+	}
+
+	private void clearInput()
+	{
+		for (int k = 0; k < activeCount; k++)
+		{
+			f1a[active[k]] = 0;
+			f1b[active[k]] = 0;
+		}
+		activeCount = 0;
+		return;
+	}
+
+	private int search(boolean learn)
+	{
+		// Compute sum of input pattern.
+		inputSum = activeCount;
+
+		computeF2();
+		if (orderedSearch)
+		{
+			buildHeap();
+		}
+
+		int f2Max = -1;
+		boolean reset = true;
+		for (int tests = 0; reset && tests < candidates; tests++)
+		{
+			// Determine the largest value of the f2 nodes not yet inhibited.
+			f2Max = orderedSearch ? popHeap() : maximum();
+
+			// The f1a to f1b activations (AND function) sum to the overlap.
+			activationSum = f2Max < committed ? overlap[f2Max] : inputSum;
+
+			reset = testForReset(activationSum, inputSum, f2Max);
+			if (reset)
+			{
+				resets += 1;
+			}
+		}
+
+		for (int c = 0; c < candidates; c++)
+		{
+			overlap[candidate[c]] = 0;
+		}
+
+		if (reset)
+		{
+			return -1; // Only an empty pattern is rejected by the uncommitted node.
+		}
+
+		if (learn)
+		{
+			// Recompute the f1a to f1b activations (perform AND function).
+			for (int k = 0; k < activeCount; k++)
+			{
+				int i = active[k];
+				f1b[i] = f2Max < committed ? f1a[i] * (int) Math.floor(tw[f2Max * n + i]) : f1a[i];
+			}
+			updateWeights(activationSum, f2Max);
+		}
+		return f2Max;
+	}
+
+	private void computeF2()
+	{
+		// Overlap of the input with every committed node, from the lists of the input's components.
+		candidates = 0;
+		for (int k = 0; k < activeCount; k++)
+		{
+			int base = active[k] * capacity;
+			int size = postingSize[active[k]];
+			for (int p = 0; p < size; p++)
+			{
+				int node = posting[base + p];
+				if (overlap[node] == 0)
+				{
+					candidate[candidates] = node;
+					candidates += 1;
+				}
+				overlap[node] += 1;
+			} // p
+		} // k
+
+		// Net input: bw * f1a summed over the components, i.e. the node's bw value added once per overlap.
+		for (int c = 0; c < candidates; c++)
+		{
+			int node = candidate[c];
+			double sum = 0.0;
+			for (int k = 0; k < overlap[node]; k++)
+			{
+				sum += choice[node];
+			}
+			f2[node] = sum;
+		} // c
+
+		// Every uncommitted node has bw = 1 / (1 + n).
+		double uncommitted = 0.0;
+		for (int k = 0; k < activeCount; k++)
+		{
+			uncommitted += (1.0 / (1.0 + n)) * (double) f1a[active[k]];
+		}
+		f2[committed] = uncommitted;
+		candidate[candidates] = committed;
+		candidates += 1;
+		return;
+	}
+
+	private boolean testForReset(int activationSum, int inputSum, int f2Max)
+	{
+		if ((double) activationSum / (double) inputSum >= vigilance)
+		{
+			return false; // Candidate is accepted.
+		}
+		else
+		{
+			f2[f2Max] = -1.0; // Inhibit.
+			return true; // Candidate is rejected.
+		}
+	}
+
+	private void updateWeights(int activationSum, int f2Max)
+	{
+		if (f2Max == committed)
+		{
+			commitNode();
+		}
+
+		int base = f2Max * n;
+
+		// Update bw(f2Max)
+		for (int i = 0; i < n; i++)
+		{
+			bw[base + i] = (2.0 * (double) f1b[i]) / (1.0 + (double) activationSum);
+		}
+		choice[f2Max] = (2.0 * 1.0) / (1.0 + (double) activationSum);
+
+		// Update tw(f2Max), and the component lists wherever it changes.
+		for (int i = 0; i < n; i++)
+		{
+			if (tw[base + i] != f1b[i])
+			{
+				if (f1b[i] == 1)
+				{
+					addPosting(i, f2Max);
+				}
+				else
+				{
+					removePosting(i, f2Max);
+				}
+			}
+			tw[base + i] = f1b[i];
+		}
+
+		if (!changed[f2Max])
+		{
+			changed[f2Max] = true;
+			changedList[changedCount] = f2Max;
+			changedCount += 1;
+		}
+		return;
+	}
+
+	private void addPosting(int i, int node)
+	{
+		int size = postingSize[i];
+		posting[i * capacity + size] = node;
+		postingIndex[node * n + i] = size;
+		postingSize[i] = size + 1;
+		return;
+	}
+
+	private void removePosting(int i, int node)
+	{
+		int last = postingSize[i] - 1;
+		int position = postingIndex[node * n + i];
+		int moved = posting[i * capacity + last];
+		posting[i * capacity + position] = moved;
+		postingIndex[moved * n + i] = position;
+		postingSize[i] = last;
+		return;
+	}
+
+	private void commitNode()
+	{
+		if (committed == capacity)
+		{
+			ensureCapacity(capacity * 2);
+		}
+		committed += 1;
+		return;
+	}
+
+	/**
+	 * Makes room for the given number of committed F2 nodes, so that learning does not allocate until there are more.
+	 */
+	public void ensureCapacity(int nodes)
+	{
+		if (nodes > capacity)
+		{
+			int newPosting[] = new int[n * nodes];
+			for (int i = 0; i < n; i++)
+			{
+				System.arraycopy(posting, i * capacity, newPosting, i * nodes, postingSize[i]);
+			}
+			posting = newPosting;
+
+			capacity = nodes;
+			// A new node's rows start at 0.0, which is what updateWeights() expects to find where tw was never 1.
+			bw = Arrays.copyOf(bw, capacity * n);
+			tw = Arrays.copyOf(tw, capacity * n);
+			choice = Arrays.copyOf(choice, capacity);
+			postingIndex = Arrays.copyOf(postingIndex, capacity * n);
+			changed = Arrays.copyOf(changed, capacity);
+			changedList = Arrays.copyOf(changedList, capacity);
+			f2 = new double[capacity + 1];
+			overlap = new int[capacity + 1];
+			candidate = new int[capacity + 1];
+			heap = new int[capacity + 1];
+		}
+		return;
+	}
+
+	private void buildHeap()
+	{
+		for (int c = 0; c < candidates; c++)
+		{
+			heap[c] = candidate[c];
+		}
+		heapSize = candidates;
+		for (int i = (heapSize >>> 1) - 1; i >= 0; i--)
+		{
+			siftDown(i);
+		}
+		return;
+	}
+
+	private int popHeap()
+	{
+		int top = heap[0];
+		heapSize -= 1;
+		heap[0] = heap[heapSize];
+		siftDown(0);
+		return top;
+	}
+
+	private void siftDown(int i)
+	{
+		int node = heap[i];
+		while (true)
+		{
+			int child = 2 * i + 1;
+			if (child >= heapSize)
+			{
+				break;
+			}
+			if (child + 1 < heapSize && ranksBefore(heap[child + 1], heap[child]))
+			{
+				child += 1;
+			}
+			if (!ranksBefore(heap[child], node))
+			{
+				break;
+			}
+			heap[i] = heap[child];
+			i = child;
+		}
+		heap[i] = node;
+		return;
+	}
+
+	private boolean ranksBefore(int a, int b)
+	{
+		return f2[a] > f2[b] || (f2[a] == f2[b] && a < b);
+	}
+
+	private int maximum()
+	{
+		// Rescan of all candidates, as in maximum() of the examples: first node with the largest value.
+		int winner = candidate[0];
+		for (int c = 1; c < candidates; c++)
+		{
+			if (ranksBefore(candidate[c], winner))
+			{
+				winner = candidate[c];
+			}
+		}
+		return winner;
+	}
+
+	/**
+	 * Makes the current weights the latest snapshot, copying only the rows changed since the last publish(), and
+	 * returns it. Must be called on the learning thread.
+	 */
+	public ART1_Snapshot publish()
+	{
+		int words = (n + 63) >>> 6;
+		long newRows[][] = new long[changedCount][];
+		double newChoice[] = new double[changedCount];
+		for (int c = 0; c < changedCount; c++)
+		{
+			int node = changedList[c];
+			newRows[c] = new long[words];
+			for (int i = 0; i < n; i++)
+			{
+				if (tw[node * n + i] == 1.0)
+				{
+					newRows[c][i >>> 6] |= 1L << i;
+				}
+			}
+			newChoice[c] = choice[node];
+			changed[node] = false;
+		} // c
+
+		snapshot = snapshot.next(committed, changedList, changedCount, newRows, newChoice);
+		changedCount = 0;
+		return snapshot;
+	}
+
+	/**
+	 * The latest published snapshot; safe to call from any thread.
+	 */
+	public ART1_Snapshot getSnapshot()
+	{
+		return snapshot;
+	}
+
+	public void setOrderedSearch(boolean orderedSearch)
+	{
+		this.orderedSearch = orderedSearch;
+		return;
+	}
+
+	/**
+	 * Total number of candidates rejected by the vigilance test so far.
+	 */
+	public long getResets()
+	{
+		return resets;
+	}
+
+	public int getCommitted()
+	{
+		return committed;
+	}
+
+	public int getInputLength()
+	{
+		return n;
+	}
+
+	public double getVigilance()
+	{
+		return vigilance;
+	}
+
+	public double getBottomUpWeight(int node, int i)
+	{
+		return node < committed ? bw[node * n + i] : 1.0 / (1.0 + n);
+	}
+
+	public double getTopDownWeight(int node, int i)
+	{
+		return node < committed ? tw[node * n + i] : 1.0;
+	}
+
+	public void printResults()
+	{
+		System.out.println("Final weight values:");
+		for (int i = 0; i < committed; i++)
+		{
+			for (int j = 0; j < n; j++)
+			{
+				System.out.print(String.format("%.1f", bw[i * n + j]) + ", ");
+			} // j
+			System.out.print("\n");
+		} // i
+		System.out.println();
+
+		for (int i = 0; i < committed; i++)
+		{
+			for (int j = 0; j < n; j++)
+			{
+				System.out.print(String.format("%.1f", tw[i * n + j]) + ", ");
+			} // j
+			System.out.print("\n");
+		} // i
+
+		return;
+	}
+
+	public static void main(String[] args) throws IOException
+	{
+		// The patterns of ART1_Example1, with a vigilance that makes the 3-node example loop forever.
+		int pattern[][] = new int[][]
+		{
+		{ 1, 1, 0, 0 },
+		{ 0, 0, 0, 1 },
+		{ 1, 0, 0, 0 },
+		{ 0, 0, 1, 1 },
+		{ 0, 1, 0, 0 },
+		{ 0, 0, 1, 0 },
+		{ 1, 0, 1, 0 } };
+
+		ART1_Network art = new ART1_Network(4, 0.9, 1);
+		int cluster[] = new int[pattern.length];
+		for (int vecNum = 0; vecNum < pattern.length; vecNum++)
+		{
+			cluster[vecNum] = art.present(pattern[vecNum], true);
+			System.out.println("Vector #" + vecNum + " belongs to cluster #" + cluster[vecNum]);
+		}
+		System.out.println("\nCommitted F2 nodes: " + art.getCommitted() + "\n");
+		art.printResults();
+
+		// The same patterns again, from a memory-mapped file.
+		File file = File.createTempFile("art1", ".bin");
+		file.deleteOnExit();
+		BitDataset.write(file, pattern, new int[pattern.length], null);
+		BitDataset data = new BitDataset(file);
+		ART1_Network mapped = new ART1_Network(4, 0.9, 1);
+		int mismatches = 0;
+		for (int vecNum = 0; vecNum < data.getRows(); vecNum++)
+		{
+			if (mapped.present(data, vecNum, true) != cluster[vecNum])
+			{
+				mismatches += 1;
+			}
+		}
+		System.out.println("\nClusters that differ when the patterns come from " + file.getName() + ": " + mismatches);
+		return;
+	}
+
+}
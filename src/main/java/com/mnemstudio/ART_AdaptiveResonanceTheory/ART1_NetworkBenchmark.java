@@ -0,0 +1,98 @@
+package com.mnemstudio.ART_AdaptiveResonanceTheory;
+
+import java.util.Random;
+
+/**
+ * Times the reset search of ART1_Network, heap-ordered against the maximum() rescan of the examples, over a sweep of
+ * category counts M and VIGILANCE values.
+ *
+ * For each M the input patterns are noisy copies of M random source patterns, so the network commits roughly M F2
+ * nodes (more at high vigilance). Both searches must give the same memberships. Usage:
+ *
+ * <pre>
+ * ART1_NetworkBenchmark [n] [inputs]
+ * </pre>
+ *
+ */
+public class ART1_NetworkBenchmark
+{
+	private static final int M_VALUES[] = new int[]
+	{ 100, 500, 1000, 2000 };
+	private static final double VIGILANCE_VALUES[] = new double[]
+	{ 0.5, 0.7, 0.9 };
+	private static final long SEED = 7L;
+
+	static int[][] makePatterns(int inputs, int n, int sources, long seed)
+	{
+		Random random = new Random(seed);
+		int source[][] = new int[sources][n];
+		for (int s = 0; s < sources; s++)
+		{
+			for (int j = 0; j < n; j++)
+			{
+				source[s][j] = random.nextDouble() < 0.2 ? 1 : 0;
+			}
+		} // s
+
+		int pattern[][] = new int[inputs][];
+		for (int i = 0; i < inputs; i++)
+		{
+			pattern[i] = source[random.nextInt(sources)].clone();
+			for (int j = 0; j < n; j++)
+			{
+				if (random.nextDouble() < 0.02)
+				{
+					pattern[i][j] = 1 - pattern[i][j]; // Noise.
+				}
+			}
+		} // i
+		return pattern;
+	}
+
+	public static void main(String[] args)
+	{
+		int n = args.length > 0 ? Integer.parseInt(args[0]) : 128;
+		int inputs = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+
+		System.out.println("n = " + n + ", inputs = " + inputs + "\n");
+		System.out.println("     M  VIGILANCE  committed  resets/input  rescan us/input  heap us/input  mismatches");
+
+		for (int mIndex = 0; mIndex < M_VALUES.length; mIndex++)
+		{
+			int pattern[][] = makePatterns(inputs, n, M_VALUES[mIndex], SEED);
+
+			for (int vIndex = 0; vIndex < VIGILANCE_VALUES.length; vIndex++)
+			{
+				double vigilance = VIGILANCE_VALUES[vIndex];
+
+				ART1_Network rescan = new ART1_Network(n, vigilance);
+				rescan.setOrderedSearch(false);
+				ART1_Network ordered = new ART1_Network(n, vigilance);
+
+				int membership[] = new int[inputs];
+				long start = System.nanoTime();
+				for (int i = 0; i < inputs; i++)
+				{
+					membership[i] = rescan.present(pattern[i], true);
+				}
+				long rescanTime = System.nanoTime() - start;
+
+				int mismatches = 0;
+				start = System.nanoTime();
+				for (int i = 0; i < inputs; i++)
+				{
+					if (ordered.present(pattern[i], true) != membership[i])
+					{
+						mismatches += 1;
+					}
+				}
+				long orderedTime = System.nanoTime() - start;
+
+				System.out.println(String.format("%6d  %9.2f  %9d  %12.1f  %15.1f  %13.1f  %10d", M_VALUES[mIndex], vigilance, ordered.getCommitted(),
+						(double) ordered.getResets() / (double) inputs, rescanTime / 1000.0 / inputs, orderedTime / 1000.0 / inputs, mismatches));
+			} // vIndex
+		} // mIndex
+		return;
+	}
+
+}
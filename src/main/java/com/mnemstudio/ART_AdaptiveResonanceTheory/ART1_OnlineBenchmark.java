@@ -0,0 +1,120 @@
+package com.mnemstudio.ART_AdaptiveResonanceTheory;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Per-input latency of ART1_Network used as a streaming clusterer: inputs arrive one at a time as the indices of their
+ * 1's, each is clustered and learned immediately, and the time of every present() call is recorded.
+ *
+ * Prints p50 / p99 / p99.9 / max latencies, throughput, and (on JVMs that can tell) the bytes allocated by the
+ * measured loop, which should be zero. Usage:
+ *
+ * <pre>
+ * ART1_OnlineBenchmark [n] [sources] [inputs] [vigilance]
+ * </pre>
+ *
+ */
+public class ART1_OnlineBenchmark
+{
+	private static final int WARM_UP = 20000;
+	private static final long SEED = 11L;
+
+	public static void main(String[] args)
+	{
+		int n = args.length > 0 ? Integer.parseInt(args[0]) : 256;
+		int sources = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+		int inputs = args.length > 2 ? Integer.parseInt(args[2]) : 100000;
+		double vigilance = args.length > 3 ? Double.parseDouble(args[3]) : 0.7;
+
+		// The stream: sparse source patterns (n / 16 ones each) with a few 1's dropped or added, as ascending indices.
+		Random random = new Random(SEED);
+		boolean source[][] = new boolean[sources][n];
+		for (int s = 0; s < sources; s++)
+		{
+			for (int k = 0; k < n / 16; k++)
+			{
+				source[s][random.nextInt(n)] = true;
+			}
+		} // s
+
+		int ones[][] = new int[WARM_UP + inputs][];
+		int count[] = new int[WARM_UP + inputs];
+		boolean input[] = new boolean[n];
+		for (int i = 0; i < ones.length; i++)
+		{
+			int s = random.nextInt(sources);
+			for (int j = 0; j < n; j++)
+			{
+				input[j] = source[s][j] && random.nextDouble() >= 0.05;
+			}
+			if (random.nextBoolean())
+			{
+				input[random.nextInt(n)] = true;
+			}
+
+			ones[i] = new int[n];
+			for (int j = 0; j < n; j++)
+			{
+				if (input[j])
+				{
+					ones[i][count[i]] = j;
+					count[i] += 1;
+				}
+			}
+		} // i
+
+		ART1_Network art = new ART1_Network(n, vigilance);
+		art.ensureCapacity(32 * sources);
+
+		for (int i = 0; i < WARM_UP; i++)
+		{
+			art.present(ones[i], count[i], true);
+		}
+
+		long latency[] = new long[inputs];
+		long allocatedBefore = allocatedBytes();
+		long start = System.nanoTime();
+		for (int i = 0; i < inputs; i++)
+		{
+			long t0 = System.nanoTime();
+			art.present(ones[WARM_UP + i], count[WARM_UP + i], true);
+			latency[i] = System.nanoTime() - t0;
+		}
+		long elapsed = System.nanoTime() - start;
+		long allocated = allocatedBytes() - allocatedBefore;
+
+		Arrays.sort(latency);
+		System.out.println("n = " + n + ", sources = " + sources + ", vigilance = " + vigilance + ", committed F2 nodes = " + art.getCommitted());
+		System.out.println(String.format("Resets per input: %.1f", (double) art.getResets() / (double) (WARM_UP + inputs)));
+		System.out.println(String.format("Throughput: %.0f inputs/s", inputs / (elapsed / 1e9)));
+		System.out.println(String.format("p50:   %8.1f us", percentile(latency, 0.50) / 1000.0));
+		System.out.println(String.format("p99:   %8.1f us", percentile(latency, 0.99) / 1000.0));
+		System.out.println(String.format("p99.9: %8.1f us", percentile(latency, 0.999) / 1000.0));
+		System.out.println(String.format("max:   %8.1f us", latency[inputs - 1] / 1000.0));
+		if (allocated >= 0)
+		{
+			System.out.println("Bytes allocated while measuring: " + allocated + " (the latency array excluded)");
+		}
+		return;
+	}
+
+	private static long percentile(long[] sorted, double fraction)
+	{
+		int index = (int) Math.ceil(fraction * sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+	}
+
+	private static long allocatedBytes()
+	{
+		// Only HotSpot-style JVMs report per-thread allocation; -1 elsewhere.
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean)
+		{
+			return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+
+}
@@ -0,0 +1,250 @@
+package com.mnemstudio.ART_AdaptiveResonanceTheory;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Adaptive Resonance Theory
+ *
+ * An immutable, versioned copy of the weights of an ART1_Network, for classifying on other threads while the network
+ * goes on learning.
+ *
+ * ART1_Network.publish() makes a new snapshot from the previous one: the array of F2 rows is copied, but only the rows
+ * updateWeights() has changed since then are new; all other rows are shared with the earlier snapshots, which is safe
+ * because no snapshot ever writes to a row. A row is the node's tw as bits, one long per 64 components, with its
+ * non-zero bw value kept beside it. The snapshot is handed over through a volatile field, so a reader that gets it
+ * also sees every row it points to, and no locks are taken on either side.
+ *
+ * classify() gives what ART1_Network.present(pattern, false) gave at the time of the snapshot: the net inputs are the
+ * same repeated sums, and, as in ART1_BatchClassifier, the reset loop ends on the node with the largest net input
+ * among those that pass the vigilance test. Every call uses its own scratch space.
+ *
+ */
+public final class ART1_Snapshot
+{
+	private final long version;
+	private final int n; // Number of components in an input vector.
+	private final int words; // 64-bit words per row.
+	private final double vigilance;
+	private final int committed;
+
+	private final long rows[][]; // tw of each committed node, as bits; shared between snapshots.
+	private final double choice[]; // The non-zero bw value of each committed node, 2 / (1 + |tw|).
+
+	ART1_Snapshot(long version, int n, double vigilance, int committed, long[][] rows, double[] choice)
+	{
+		this.version = version;
+		this.n = n;
+		this.words = (n + 63) >>> 6;
+		this.vigilance = vigilance;
+		this.committed = committed;
+		this.rows = rows;
+		this.choice = choice;
+		return;
+	}
+
+	/**
+	 * The snapshot that follows this one: the first "committed" rows of this one, with rows[node] replaced for each
+	 * node in changed[0 .. count - 1]. Only the changed rows and the two outer arrays are allocated.
+	 */
+	ART1_Snapshot next(int committed, int[] changed, int count, long[][] newRows, double[] newChoice)
+	{
+		long nextRows[][] = Arrays.copyOf(rows, committed);
+		double nextChoice[] = Arrays.copyOf(choice, committed);
+		for (int c = 0; c < count; c++)
+		{
+			nextRows[changed[c]] = newRows[c];
+			nextChoice[changed[c]] = newChoice[c];
+		}
+		return new ART1_Snapshot(version + 1, n, vigilance, committed, nextRows, nextChoice);
+	}
+
+	static ART1_Snapshot empty(int n, double vigilance)
+	{
+		return new ART1_Snapshot(0, n, vigilance, 0, new long[0][], new double[0]);
+	}
+
+	/**
+	 * The F2 node the pattern resonates with: a committed node, getCommitted() for the uncommitted node, or -1 for an
+	 * all-zero pattern. Non-zero components count as 1.
+	 */
+	public int classify(int[] pattern)
+	{
+		long input[] = new long[words];
+		int inputSum = 0;
+		for (int i = 0; i < n; i++)
+		{
+			if (pattern[i] != 0)
+			{
+				input[i >>> 6] |= 1L << i;
+				inputSum += 1;
+			}
+		}
+		if (inputSum == 0)
+		{
+			return -1; // Every node, committed or not, rejects an empty pattern.
+		}
+
+		int winner = -1;
+		double best = -1.0;
+		for (int node = 0; node < committed; node++)
+		{
+			long row[] = rows[node];
+			int activationSum = 0;
+			for (int w = 0; w < words; w++)
+			{
+				activationSum += Long.bitCount(input[w] & row[w]);
+			}
+			if (activationSum > 0 && (double) activationSum / (double) inputSum >= vigilance)
+			{
+				double f2 = 0.0;
+				for (int k = 0; k < activationSum; k++)
+				{
+					f2 += choice[node];
+				}
+				// Strictly larger, so that ties go to the lowest node.
+				if (f2 > best)
+				{
+					best = f2;
+					winner = node;
+				}
+			}
+		} // node
+
+		// Every uncommitted node has bw = 1 / (1 + n), and comes after the committed ones.
+		double uncommitted = 0.0;
+		for (int i = 0; i < n; i++)
+		{
+			if (pattern[i] != 0)
+			{
+				uncommitted += (1.0 / (1.0 + n)) * 1.0;
+			}
+		}
+		return winner >= 0 && best >= uncommitted ? winner : committed;
+	}
+
+	/**
+	 * Publication number: 0 for the empty network, one more for each publish().
+	 */
+	public long getVersion()
+	{
+		return version;
+	}
+
+	public int getCommitted()
+	{
+		return committed;
+	}
+
+	public int getInputLength()
+	{
+		return n;
+	}
+
+	public double getVigilance()
+	{
+		return vigilance;
+	}
+
+	public double getTopDownWeight(int node, int i)
+	{
+		return node < committed ? (double) ((rows[node][i >>> 6] >>> i) & 1L) : 1.0;
+	}
+
+	/**
+	 * True if this snapshot and another hold the very same row object for the node, i.e. it was not copied.
+	 */
+	public boolean sharesRow(ART1_Snapshot other, int node)
+	{
+		return node < committed && node < other.committed && rows[node] == other.rows[node];
+	}
+
+	public static void main(String[] args) throws InterruptedException
+	{
+		int n = args.length > 0 ? Integer.parseInt(args[0]) : 128;
+		int inputs = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+		int readers = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+
+		final int pattern[][] = ART1_NetworkBenchmark.makePatterns(inputs, n, 500, 13L);
+		final ART1_Network art = new ART1_Network(n, 0.7);
+		final AtomicBoolean learning = new AtomicBoolean(true);
+		final AtomicLong reads = new AtomicLong();
+
+		// Readers classify against whatever snapshot is the latest, as fast as they can.
+		Thread reader[] = new Thread[readers];
+		for (int r = 0; r < readers; r++)
+		{
+			final int first = r;
+			reader[r] = new Thread(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					long count = 0;
+					for (int i = first; learning.get(); i = (i + 7) % pattern.length)
+					{
+						art.getSnapshot().classify(pattern[i]);
+						count += 1;
+					}
+					reads.addAndGet(count);
+				}
+			});
+			reader[r].start();
+		} // r
+
+		// The writer learns and publishes after every input. Some snapshots are kept, with what present() said then.
+		ART1_Snapshot kept[] = new ART1_Snapshot[inputs / 1000 + 1];
+		int expected[][] = new int[kept.length][pattern.length];
+		long start = System.nanoTime();
+		for (int vecNum = 0; vecNum < inputs; vecNum++)
+		{
+			art.present(pattern[vecNum], true);
+			ART1_Snapshot published = art.publish();
+			if (vecNum % 1000 == 0)
+			{
+				kept[vecNum / 1000] = published;
+				for (int i = 0; i < pattern.length; i += 10)
+				{
+					expected[vecNum / 1000][i] = art.present(pattern[i], false);
+				}
+			}
+		}
+		long elapsed = System.nanoTime() - start;
+		learning.set(false);
+		for (int r = 0; r < readers; r++)
+		{
+			reader[r].join();
+		}
+
+		// The kept snapshots still classify as the network did when they were published.
+		int mismatches = 0;
+		for (int s = 0; s < kept.length; s++)
+		{
+			for (int i = 0; kept[s] != null && i < pattern.length; i += 10)
+			{
+				if (kept[s].classify(pattern[i]) != expected[s][i])
+				{
+					mismatches += 1;
+				}
+			}
+		} // s
+
+		ART1_Snapshot last = art.getSnapshot();
+		int shared = 0;
+		for (int node = 0; node < last.getCommitted(); node++)
+		{
+			if (last.sharesRow(kept[kept.length / 2], node))
+			{
+				shared += 1;
+			}
+		}
+
+		System.out.println("Learned " + inputs + " inputs with a publish() after each: " + elapsed / 1000000 + " ms, " + last.getVersion() + " versions");
+		System.out.println(readers + " readers classified " + reads.get() + " inputs meanwhile");
+		System.out.println("Rows of the last snapshot shared with version " + kept[kept.length / 2].getVersion() + ": " + shared + " of " + last.getCommitted());
+		System.out.println("Kept snapshots that no longer classify as when published: " + mismatches);
+		return;
+	}
+
+}
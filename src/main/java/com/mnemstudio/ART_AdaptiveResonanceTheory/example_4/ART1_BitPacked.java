@@ -0,0 +1,1476 @@
+package com.mnemstudio.ART_AdaptiveResonanceTheory.example_4;
+
+import java.util.Arrays;
+
+/**
+ * Adaptive Resonance Theory
+ *
+ * Bit-packed version of the M. T. Jones ART1 customer clustering in ART1_mtjones1.
+ *
+ * Each customer row and each prototype vector is stored as a run of 64-bit words (one bit per store item) inside a
+ * single flat long[] array, so a basket over 10,000 items takes 157 words instead of 10,000 ints. The AND of a customer
+ * with a prototype and the magnitude of the result are computed a whole word at a time with Long.bitCount, without
+ * building the temporary ANDResult[] array used by vectorBitwiseAND().
+ *
+ * The control flow of performART1() is kept exactly as in ART1_mtjones1, including its quirks (the vigilance test
+ * accepts a move when magPE / magE is BELOW the vigilance, and a customer that is still unassigned takes the cluster
+ * number without being counted in members[]), so both versions produce the same memberships for the same data.
+ * ART1_BitPackedBenchmark checks this and times the two against each other.
+ *
+ * Prototypes are not rebuilt by rescanning the whole database. Each cluster keeps a linked list of the customers whose
+ * membership points at it and a count, per item, of how many of them bought that item; an item belongs to the
+ * prototype exactly when every member bought it, so updatePrototypeVector() only has to look up the counts of the
+ * items of one member. Only the non-zero counts are kept, in a small hash table per cluster, so the memory grows
+ * with what the members bought and not with the clusters times MAX_ITEMS. The magnitude of every customer row
+ * and prototype is cached as well.
+ *
+ * Baskets are sparse, so performART1() does not score every prototype over all MAX_ITEMS. An inverted index lists, for
+ * each item, the prototypes that contain it; |P AND E| for all prototypes at once is counted by walking the postings
+ * of the customer's own items only. A prototype sharing no item with the customer cannot pass the "result > test"
+ * check, so only the prototypes that were touched are examined, in ascending order as before. The postings are updated
+ * wherever a prototype changes.
+ *
+ * performART1UntilConverged() is a worklist version of performART1(). A customer can only move if a prototype it
+ * shares an item with has changed since it was last examined, so every prototype change marks the cluster dirty, and
+ * the customers holding one of its items (found through an item-to-customer index) or belonging to it are queued: for
+ * later in the same pass if their turn has not come yet, otherwise for the next pass. Customers nobody queued are
+ * skipped. The passes see exactly what the full passes of performART1() would see, so the memberships are the same,
+ * and it stops as soon as a pass queues nothing, reporting the moves made in each pass.
+ *
+ * The prototype store is not a fixed TOTAL_PROTOTYPE_VECTORS: totalPrototypeVectors is only the initial capacity, and
+ * all per-prototype arrays double when createNewPrototypeVector() finds no free slot. The free slots (members == 0, the
+ * test ART1_mtjones1 uses) are kept in a two-level bitmap, one bit per slot plus one summary bit per word, updated
+ * whenever a members[] count reaches or leaves zero, so the lowest free slot - the one the linear search of
+ * ART1_mtjones1 would find - is found by looking at one summary word per 4096 slots and one slot word. With
+ * setAutoCompact(true), the live prototypes are moved down into contiguous slots (keeping their order) and the arrays
+ * shrunk whenever a pass ends with fewer than a quarter of the slots live; compact() does it on demand. Compaction
+ * renumbers the clusters, and new clusters can then land in a different place in the scan order, so runs that compact
+ * no longer match ART1_mtjones1 exactly.
+ *
+ * For recommendations, enableRecommendations() builds, from the same per-item counts, each cluster's items ordered by
+ * how many members bought them (only the items some member bought, so this too grows with the baskets). An item's count only ever moves by one, so keeping the order is a swap with the first
+ * or last item of its run of equal counts; the start of each run is kept per count. recommend() then walks a cluster's
+ * most bought items from the top, skipping the customer's own, without looking at any other customer.
+ *
+ */
+public class ART1_BitPacked
+{
+	public static final int DEFAULT_COUNT = 50; // Same arbitrary iteration limit as ART1_mtjones1.
+
+	private final int mItems;
+	private final int mWords; // 64-bit words per row.
+	private final int mCustomers;
+	private final int mInitialPrototypeVectors;
+	private int mTotalPrototypeVectors = 0; // Current capacity of the prototype store.
+	private final double mBeta;
+	private final double mVigilance;
+
+	private int mPrototypeVectors = 0; // Total populated prototype vectors.
+
+	// Row-major bit matrices; row r occupies words [r * mWords, (r + 1) * mWords).
+	private final long mDatabase[];
+	private long mPrototypeVector[] = null;
+
+	// Number of occupants of cluster.
+	private int mMembers[] = null;
+
+	// Identifies which cluster a member belongs to.
+	private final int mMembership[];
+
+	// Customers whose membership points at each cluster, as doubly linked lists through mNext/mPrev.
+	// mMemberCount is the real list length; mMembers keeps the ART1_mtjones1 counting.
+	private int mHead[] = null;
+	private final int mNext[];
+	private final int mPrev[];
+	private int mMemberCount[] = null;
+
+	// mItemCount[cluster] maps item to the members of cluster who bought it; absent when 0.
+	private CountTable mItemCount[] = null;
+
+	private final int mRowMagnitude[];
+	private int mPrototypeMagnitude[] = null;
+
+	// Recommendation tables, after enableRecommendations(): mItemOrder[cluster][rank] is the item of that rank in the
+	// cluster (most bought first) among the items at least one member bought, mItemRank[cluster] the reverse, and
+	// ranks [0, mAtLeast[cluster][c]) hold the items at least c members bought.
+	private boolean mRecommending = false;
+	private int mItemOrder[][] = null;
+	private CountTable mItemRank[] = null;
+	private int mAtLeast[][] = null;
+
+	// Free slots (mMembers == 0): bit c of mFree, and bit w of mFreeSummary when mFree[w] has any bit set.
+	private long mFree[] = null;
+	private long mFreeSummary[] = null;
+	private boolean mAutoCompact = false;
+
+	// Inverted index: mPosting[item][0 .. mPostingSize[item]) are the prototypes containing item, and
+	// mPostingIndex[cluster] maps item to the position of cluster in that list.
+	private final int mPosting[][];
+	private final int mPostingSize[];
+	private CountTable mPostingIndex[] = null;
+
+	// Scratch for presentCustomer(): |P AND E| per prototype, and the prototypes with a non-zero count.
+	private int mOverlap[] = null;
+	private int mTouched[] = null;
+
+	// Prototypes changed since the worklist last looked at them.
+	private boolean mIsDirty[] = null;
+	private int mDirty[] = null;
+	private int mDirtyCount = 0;
+
+	// Item-to-customer index for the worklist, mCustomerList[mCustomerStart[item] .. mCustomerStart[item + 1]).
+	private int mCustomerStart[] = null;
+	private int mCustomerList[] = null;
+
+	// Customers queued for the current and the next pass, one bit each.
+	private final long mThisPass[];
+	private final long mNextPass[];
+
+	public ART1_BitPacked(int maxItems, int maxCustomers, int totalPrototypeVectors, double beta, double vigilance)
+	{
+		mItems = maxItems;
+		mWords = wordsFor(maxItems);
+		mCustomers = maxCustomers;
+		mInitialPrototypeVectors = Math.max(1, totalPrototypeVectors);
+		mBeta = beta;
+		mVigilance = vigilance;
+
+		mDatabase = new long[arrayLength(maxCustomers, mWords, "customers")];
+		mMembership = new int[maxCustomers];
+		mNext = new int[maxCustomers];
+		mPrev = new int[maxCustomers];
+		mRowMagnitude = new int[maxCustomers];
+
+		mPosting = new int[maxItems][];
+		mPostingSize = new int[maxItems];
+		for (int item = 0; item < maxItems; item++)
+		{
+			mPosting[item] = new int[4];
+		}
+		resizePrototypes(mInitialPrototypeVectors);
+		mThisPass = new long[wordsFor(maxCustomers)];
+		mNextPass = new long[wordsFor(maxCustomers)];
+		initialize();
+		return;
+	}
+
+	public static int wordsFor(int items)
+	{
+		return (items + 63) >>> 6;
+	}
+
+	/**
+	 * rows * words, when an array can be that long.
+	 */
+	private static int arrayLength(int rows, int words, String what)
+	{
+		long length = (long) rows * words;
+		if (length > Integer.MAX_VALUE - 8)
+		{
+			throw new IllegalStateException(rows + " " + what + " of " + words + " words are more than one array can hold");
+		}
+		return (int) length;
+	}
+
+	/**
+	 * Packs a 0/1 row, as used in ART1_mtjones1.database, into this customer's bits. Call initialize() afterwards if the
+	 * customer had already been clustered.
+	 */
+	public void setCustomer(int customer, int[] row)
+	{
+		int base = customer * mWords;
+		for (int w = 0; w < mWords; w++)
+		{
+			mDatabase[base + w] = 0L;
+		}
+		for (int item = 0; item < mItems; item++)
+		{
+			if (row[item] == 1)
+			{
+				mDatabase[base + (item >>> 6)] |= 1L << item;
+			}
+		} // item
+		mRowMagnitude[customer] = magnitude(mDatabase, customer);
+		return;
+	}
+
+	/**
+	 * Copies an already packed row (mWords words starting at offset) into this customer's bits.
+	 */
+	public void setCustomer(int customer, long[] bits, int offset)
+	{
+		System.arraycopy(bits, offset, mDatabase, customer * mWords, mWords);
+		mRowMagnitude[customer] = magnitude(mDatabase, customer);
+		return;
+	}
+
+	/**
+	 * Adds an item to, or removes it from, a customer's basket. If the customer is in a cluster, the cluster's item
+	 * counts and prototype vector are recalculated as after a move; the customer itself stays put until
+	 * retestCustomer().
+	 */
+	public void setCustomerItem(int customer, int item, boolean bought)
+	{
+		int index = customer * mWords + (item >>> 6);
+		long bit = 1L << item;
+		if (((mDatabase[index] & bit) != 0L) == bought)
+		{
+			return;
+		}
+
+		int cluster = mMembership[customer];
+		if (bought)
+		{
+			mDatabase[index] |= bit;
+			mRowMagnitude[customer] += 1;
+		}
+		else
+		{
+			mDatabase[index] &= ~bit;
+			mRowMagnitude[customer] -= 1;
+		}
+		if (cluster >= 0)
+		{
+			addItemCount(cluster, item, bought ? 1 : -1);
+			updatePrototypeVector(cluster);
+		}
+		return;
+	}
+
+	/**
+	 * Runs one step of the customers loop of performART1() for a single customer, after its basket has changed. A
+	 * customer whose basket is now empty leaves its cluster instead (an empty basket cannot match anything, and
+	 * performART1() would give it a cluster of its own). Returns true if the customer moved.
+	 */
+	public boolean retestCustomer(int customer)
+	{
+		if (mRowMagnitude[customer] > 0)
+		{
+			return presentCustomer(customer);
+		}
+		int old = mMembership[customer];
+		if (old < 0)
+		{
+			return false;
+		}
+		moveMember(customer, old, -1);
+		setMembers(old, mMembers[old] - 1);
+		if (mMembers[old] == 0)
+		{
+			mPrototypeVectors -= 1;
+		}
+		updatePrototypeVector(old);
+		return true;
+	}
+
+	public void setDatabase(int[][] database)
+	{
+		for (int customer = 0; customer < mCustomers; customer++)
+		{
+			setCustomer(customer, database[customer]);
+		}
+		return;
+	}
+
+	public void initialize()
+	{
+		for (int i = 0; i < mPrototypeVector.length; i++)
+		{
+			mPrototypeVector[i] = 0L;
+		}
+		for (int item = 0; item < mItems; item++)
+		{
+			mPostingSize[item] = 0;
+		}
+		for (int i = 0; i < mTotalPrototypeVectors; i++)
+		{
+			mItemCount[i].clear();
+			mPostingIndex[i].clear();
+			setMembers(i, 0);
+			mHead[i] = -1;
+			mMemberCount[i] = 0;
+			mPrototypeMagnitude[i] = 0;
+		}
+		for (int i = 0; i < mCustomers; i++)
+		{
+			mMembership[i] = -1;
+			mNext[i] = -1;
+			mPrev[i] = -1;
+		}
+		mPrototypeVectors = 0;
+		clearDirty();
+		if (mRecommending)
+		{
+			buildRecommendationTables();
+		}
+		return;
+	}
+
+	public void performART1()
+	{
+		performART1(DEFAULT_COUNT);
+		return;
+	}
+
+	public void performART1(int count)
+	{
+		boolean done = false;
+
+		while (!done)
+		{
+			done = true;
+			for (int i = 0; i < mCustomers; i++)
+			{
+				if (presentCustomer(i))
+				{
+					done = false;
+				}
+			} // for Customers loop.
+			compactIfSparse();
+
+			if (count <= 0)
+			{
+				break;
+			}
+			else
+			{
+				// Not Done yet.
+				count -= 1;
+			}
+		}
+		return;
+	}
+
+	/**
+	 * Runs performART1() with the same iteration limit, examining only customers that may move.
+	 */
+	public int[] performART1UntilConverged()
+	{
+		return performART1UntilConverged(DEFAULT_COUNT + 1);
+	}
+
+	/**
+	 * Runs passes until no customer is left to examine, or until maxPasses passes. Returns the number of moves (including
+	 * new clusters) made in each pass; its length is the number of passes.
+	 */
+	public int[] performART1UntilConverged(int maxPasses)
+	{
+		int movesPerPass[] = new int[Math.max(0, maxPasses)];
+		int passes = 0;
+
+		buildCustomerIndex();
+		clearDirty();
+		for (int w = 0; w < mThisPass.length; w++)
+		{
+			mThisPass[w] = 0L;
+			mNextPass[w] = 0L;
+		}
+		// The first pass looks at everybody.
+		for (int i = 0; i < mCustomers; i++)
+		{
+			mThisPass[i >>> 6] |= 1L << i;
+		}
+
+		boolean queued = mCustomers > 0;
+		while (queued && passes < maxPasses)
+		{
+			int moves = 0;
+			for (int w = 0; w < mThisPass.length; w++)
+			{
+				// Customers further on in this word may be queued while it is being worked through.
+				while (mThisPass[w] != 0L)
+				{
+					int i = (w << 6) + Long.numberOfTrailingZeros(mThisPass[w]);
+					mThisPass[w] &= mThisPass[w] - 1L;
+
+					if (presentCustomer(i))
+					{
+						moves += 1;
+						mNextPass[i >>> 6] |= 1L << i;
+						queueDirtyClusters(i);
+					}
+				}
+			} // w
+			movesPerPass[passes] = moves;
+			passes += 1;
+			compactIfSparse();
+
+			queued = false;
+			for (int w = 0; w < mThisPass.length; w++)
+			{
+				mThisPass[w] = mNextPass[w];
+				mNextPass[w] = 0L;
+				queued |= mThisPass[w] != 0L;
+			}
+		}
+		return Arrays.copyOf(movesPerPass, passes);
+	}
+
+	/**
+	 * Queues everybody who shares an item with, or belongs to, a cluster that changed while customer "position" was
+	 * examined.
+	 */
+	private void queueDirtyClusters(final int position)
+	{
+		for (int d = 0; d < mDirtyCount; d++)
+		{
+			int cluster = mDirty[d];
+			mIsDirty[cluster] = false;
+
+			for (int customer = mHead[cluster]; customer >= 0; customer = mNext[customer])
+			{
+				queueCustomer(customer, position);
+			}
+
+			int pBase = cluster * mWords;
+			for (int w = 0; w < mWords; w++)
+			{
+				long bits = mPrototypeVector[pBase + w];
+				while (bits != 0L)
+				{
+					int item = (w << 6) + Long.numberOfTrailingZeros(bits);
+					for (int k = mCustomerStart[item]; k < mCustomerStart[item + 1]; k++)
+					{
+						queueCustomer(mCustomerList[k], position);
+					}
+					bits &= bits - 1L;
+				}
+			} // w
+		} // d
+		mDirtyCount = 0;
+		return;
+	}
+
+	private void queueCustomer(final int customer, final int position)
+	{
+		if (customer > position)
+		{
+			mThisPass[customer >>> 6] |= 1L << customer;
+		}
+		else
+		{
+			mNextPass[customer >>> 6] |= 1L << customer;
+		}
+		return;
+	}
+
+	private void buildCustomerIndex()
+	{
+		mCustomerStart = new int[mItems + 1];
+		for (int customer = 0; customer < mCustomers; customer++)
+		{
+			int dBase = customer * mWords;
+			for (int w = 0; w < mWords; w++)
+			{
+				long bits = mDatabase[dBase + w];
+				while (bits != 0L)
+				{
+					mCustomerStart[(w << 6) + Long.numberOfTrailingZeros(bits) + 1] += 1;
+					bits &= bits - 1L;
+				}
+			} // w
+		} // customer
+		for (int item = 0; item < mItems; item++)
+		{
+			mCustomerStart[item + 1] += mCustomerStart[item];
+		}
+
+		mCustomerList = new int[mCustomerStart[mItems]];
+		int fill[] = Arrays.copyOf(mCustomerStart, mItems);
+		for (int customer = 0; customer < mCustomers; customer++)
+		{
+			int dBase = customer * mWords;
+			for (int w = 0; w < mWords; w++)
+			{
+				long bits = mDatabase[dBase + w];
+				while (bits != 0L)
+				{
+					int item = (w << 6) + Long.numberOfTrailingZeros(bits);
+					mCustomerList[fill[item]] = customer;
+					fill[item] += 1;
+					bits &= bits - 1L;
+				}
+			} // w
+		} // customer
+		return;
+	}
+
+	private void markDirty(final int cluster)
+	{
+		if (!mIsDirty[cluster])
+		{
+			mIsDirty[cluster] = true;
+			mDirty[mDirtyCount] = cluster;
+			mDirtyCount += 1;
+		}
+		return;
+	}
+
+	private void clearDirty()
+	{
+		for (int d = 0; d < mDirtyCount; d++)
+		{
+			mIsDirty[mDirty[d]] = false;
+		}
+		mDirtyCount = 0;
+		return;
+	}
+
+	/**
+	 * One step of the customers loop in performART1(). Returns true if the customer moved or got a new cluster.
+	 */
+	private boolean presentCustomer(final int i)
+	{
+		int magE = mRowMagnitude[i];
+		double test = (double) magE / (mBeta + (double) mItems);
+
+		int touched = countOverlaps(i);
+		boolean moved = false;
+
+		for (int t = 0; t < touched; t++)
+		{
+			int pVec = mTouched[t];
+
+			// Check to see if this vector has any members.
+			if (mMembers[pVec] > 0)
+			{
+				int magPE = mOverlap[pVec];
+				int magP = mPrototypeMagnitude[pVec];
+
+				double result = (double) magPE / (mBeta + (double) magP);
+
+				// Test for vigilance acceptability, then ensure this is a different cluster.
+				if (result > test && ((double) magPE / (double) magE) < mVigilance && mMembership[i] != pVec)
+				{
+					// Move customer to the new cluster
+					int old = mMembership[i];
+					moveMember(i, old, pVec);
+
+					if (old >= 0)
+					{
+						setMembers(old, mMembers[old] - 1);
+						if (mMembers[old] == 0)
+						{
+							mPrototypeVectors -= 1;
+						}
+						setMembers(pVec, mMembers[pVec] + 1);
+						// Recalculate the prototype vectors for the old and new clusters.
+						updatePrototypeVector(old);
+						updatePrototypeVector(pVec);
+						moved = true;
+						break;
+					}
+				}
+			}
+		} // t.
+
+		for (int t = 0; t < touched; t++)
+		{
+			mOverlap[mTouched[t]] = 0;
+		}
+		if (moved)
+		{
+			return true;
+		}
+
+		// Check to see if the current vector was processed.
+		if (mMembership[i] == -1)
+		{
+			// No prototype vector was found to be close to the example
+			// vector. Create a new prototype vector for this example.
+			int cluster = createNewPrototypeVector(i);
+			moveMember(i, -1, cluster);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Fills mOverlap with |P AND E| from the postings of the customer's items, and mTouched with the prototypes that got
+	 * a non-zero count, in ascending order. Returns how many were touched.
+	 */
+	private int countOverlaps(final int customer)
+	{
+		int touched = 0;
+		int dBase = customer * mWords;
+		for (int w = 0; w < mWords; w++)
+		{
+			long bits = mDatabase[dBase + w];
+			while (bits != 0L)
+			{
+				int item = (w << 6) + Long.numberOfTrailingZeros(bits);
+				int posting[] = mPosting[item];
+				int size = mPostingSize[item];
+				for (int k = 0; k < size; k++)
+				{
+					int cluster = posting[k];
+					if (mOverlap[cluster] == 0)
+					{
+						mTouched[touched] = cluster;
+						touched += 1;
+					}
+					mOverlap[cluster] += 1;
+				} // k
+				bits &= bits - 1L;
+			}
+		} // w
+		Arrays.sort(mTouched, 0, touched);
+		return touched;
+	}
+
+	private void updatePrototypeVector(final int cluster)
+	{
+		// Same result as ANDing together every customer whose membership is this cluster. Such an item is in every
+		// member's basket, so only the items of the first member need their counts looked up.
+		int count = mMemberCount[cluster];
+		int dBase = count > 0 ? mHead[cluster] * mWords : -1;
+		CountTable itemCount = mItemCount[cluster];
+		int totalOnes = 0;
+
+		for (int w = 0; w < mWords; w++)
+		{
+			long bits = 0L;
+			long candidates = count > 0 ? mDatabase[dBase + w] : 0L;
+			while (candidates != 0L)
+			{
+				int item = (w << 6) + Long.numberOfTrailingZeros(candidates);
+				if (itemCount.get(item) == count)
+				{
+					bits |= 1L << item;
+				}
+				candidates &= candidates - 1L;
+			}
+			setPrototypeWord(cluster, w, bits);
+			totalOnes += Long.bitCount(bits);
+		} // w
+		mPrototypeMagnitude[cluster] = totalOnes;
+		return;
+	}
+
+	/**
+	 * Points the customer's membership at a new cluster (or -1), keeping the member lists and item counts in step. The
+	 * prototype vectors themselves are left alone; they change only where ART1_mtjones1 changes them.
+	 */
+	private void moveMember(final int customer, final int old, final int cluster)
+	{
+		if (old >= 0)
+		{
+			int prev = mPrev[customer];
+			int next = mNext[customer];
+			if (prev >= 0)
+			{
+				mNext[prev] = next;
+			}
+			else
+			{
+				mHead[old] = next;
+			}
+			if (next >= 0)
+			{
+				mPrev[next] = prev;
+			}
+			mMemberCount[old] -= 1;
+			addItemCounts(customer, old, -1);
+		}
+
+		mMembership[customer] = cluster;
+		mPrev[customer] = -1;
+		mNext[customer] = -1;
+
+		if (cluster >= 0)
+		{
+			int head = mHead[cluster];
+			mNext[customer] = head;
+			if (head >= 0)
+			{
+				mPrev[head] = customer;
+			}
+			mHead[cluster] = customer;
+			mMemberCount[cluster] += 1;
+			addItemCounts(customer, cluster, 1);
+		}
+		return;
+	}
+
+	private void addItemCounts(final int customer, final int cluster, final int delta)
+	{
+		int dBase = customer * mWords;
+		for (int w = 0; w < mWords; w++)
+		{
+			long bits = mDatabase[dBase + w];
+			while (bits != 0L)
+			{
+				addItemCount(cluster, (w << 6) + Long.numberOfTrailingZeros(bits), delta);
+				bits &= bits - 1L;
+			}
+		} // w
+		return;
+	}
+
+	private void addItemCount(final int cluster, final int item, final int delta)
+	{
+		int count = mItemCount[cluster].add(item, delta);
+		if (mRecommending)
+		{
+			reorderItem(cluster, item, count - delta, delta);
+		}
+		return;
+	}
+
+	private int createNewPrototypeVector(final int customer)
+	{
+		int cluster = firstFreeSlot();
+		if (cluster < 0)
+		{
+			// Every slot is taken: grow the store, the first new slot is the lowest free one.
+			cluster = mTotalPrototypeVectors;
+			if (mTotalPrototypeVectors > Integer.MAX_VALUE / 2)
+			{
+				throw new IllegalStateException("The prototype store cannot grow past " + mTotalPrototypeVectors + " slots");
+			}
+			resizePrototypes(mTotalPrototypeVectors * 2);
+		}
+		mPrototypeVectors += 1;
+		for (int w = 0; w < mWords; w++)
+		{
+			setPrototypeWord(cluster, w, mDatabase[customer * mWords + w]);
+		}
+		mPrototypeMagnitude[cluster] = mRowMagnitude[customer];
+		setMembers(cluster, 1);
+		markDirty(cluster);
+		return cluster;
+	}
+
+	/**
+	 * Sets members[cluster], keeping the free-slot bitmap in step.
+	 */
+	private void setMembers(final int cluster, final int members)
+	{
+		mMembers[cluster] = members;
+		int w = cluster >>> 6;
+		if (members == 0)
+		{
+			mFree[w] |= 1L << cluster;
+		}
+		else
+		{
+			mFree[w] &= ~(1L << cluster);
+		}
+		if (mFree[w] != 0L)
+		{
+			mFreeSummary[w >>> 6] |= 1L << w;
+		}
+		else
+		{
+			mFreeSummary[w >>> 6] &= ~(1L << w);
+		}
+		return;
+	}
+
+	/**
+	 * The lowest slot with members == 0, or -1 if there is none.
+	 */
+	private int firstFreeSlot()
+	{
+		for (int s = 0; s < mFreeSummary.length; s++)
+		{
+			if (mFreeSummary[s] != 0L)
+			{
+				int w = (s << 6) + Long.numberOfTrailingZeros(mFreeSummary[s]);
+				return (w << 6) + Long.numberOfTrailingZeros(mFree[w]);
+			}
+		} // s
+		return -1;
+	}
+
+	/**
+	 * Reallocates every per-prototype array for the given number of slots, keeping the slots below it. New slots are
+	 * empty and free.
+	 */
+	private void resizePrototypes(final int capacity)
+	{
+		int old = mTotalPrototypeVectors;
+		mTotalPrototypeVectors = capacity;
+
+		mPrototypeVector = copyOf(mPrototypeVector, arrayLength(capacity, mWords, "prototype slots"));
+		mMembers = copyOf(mMembers, capacity);
+		mHead = copyOf(mHead, capacity);
+		mMemberCount = copyOf(mMemberCount, capacity);
+		mPrototypeMagnitude = copyOf(mPrototypeMagnitude, capacity);
+		mItemCount = copyOf(mItemCount, capacity);
+		mPostingIndex = copyOf(mPostingIndex, capacity);
+		mOverlap = new int[capacity];
+		mTouched = new int[capacity];
+		mIsDirty = new boolean[capacity];
+		mDirty = new int[capacity];
+		mDirtyCount = 0;
+
+		mFree = new long[wordsFor(capacity)];
+		mFreeSummary = new long[wordsFor(mFree.length)];
+		for (int cluster = old; cluster < capacity; cluster++)
+		{
+			mHead[cluster] = -1;
+		}
+		for (int cluster = 0; cluster < capacity; cluster++)
+		{
+			setMembers(cluster, mMembers[cluster]);
+		}
+		if (mRecommending)
+		{
+			buildRecommendationTables();
+		}
+		return;
+	}
+
+	private static long[] copyOf(final long[] array, final int length)
+	{
+		return array == null ? new long[length] : Arrays.copyOf(array, length);
+	}
+
+	private static int[] copyOf(final int[] array, final int length)
+	{
+		return array == null ? new int[length] : Arrays.copyOf(array, length);
+	}
+
+	private static CountTable[] copyOf(final CountTable[] array, final int length)
+	{
+		CountTable copy[] = array == null ? new CountTable[length] : Arrays.copyOf(array, length);
+		for (int i = array == null ? 0 : array.length; i < length; i++)
+		{
+			copy[i] = new CountTable();
+		}
+		return copy;
+	}
+
+	/**
+	 * Compacts at the end of a pass if enabled and fewer than a quarter of the slots are live.
+	 */
+	private void compactIfSparse()
+	{
+		if (mAutoCompact && mTotalPrototypeVectors > mInitialPrototypeVectors && liveSlots() * 4 < mTotalPrototypeVectors)
+		{
+			compact();
+		}
+		return;
+	}
+
+	/**
+	 * Slots that have a members[] count or customers pointing at them.
+	 */
+	private int liveSlots()
+	{
+		int live = 0;
+		for (int cluster = 0; cluster < mTotalPrototypeVectors; cluster++)
+		{
+			if (mMembers[cluster] != 0 || mMemberCount[cluster] != 0)
+			{
+				live += 1;
+			}
+		}
+		return live;
+	}
+
+	/**
+	 * Moves the live prototypes into slots 0, 1, ... in their current order, renumbers the memberships, and shrinks the
+	 * store to twice the live slots (but no less than the initial capacity). Returns the number of live slots.
+	 */
+	public int compact()
+	{
+		clearDirty();
+		for (int item = 0; item < mItems; item++)
+		{
+			mPostingSize[item] = 0;
+		}
+		for (int cluster = 0; cluster < mTotalPrototypeVectors; cluster++)
+		{
+			mPostingIndex[cluster].clear();
+		}
+
+		int map[] = new int[mTotalPrototypeVectors];
+		int live = 0;
+		for (int cluster = 0; cluster < mTotalPrototypeVectors; cluster++)
+		{
+			map[cluster] = -1;
+			if (mMembers[cluster] != 0 || mMemberCount[cluster] != 0)
+			{
+				// Slots only ever move down, so ascending order never overwrites a slot still to be moved.
+				map[cluster] = live;
+				if (live != cluster)
+				{
+					System.arraycopy(mPrototypeVector, cluster * mWords, mPrototypeVector, live * mWords, mWords);
+					mMembers[live] = mMembers[cluster];
+					mHead[live] = mHead[cluster];
+					mMemberCount[live] = mMemberCount[cluster];
+					mPrototypeMagnitude[live] = mPrototypeMagnitude[cluster];
+
+					// The slot left behind has no members, so its table of counts is empty and can be reused.
+					CountTable empty = mItemCount[live];
+					mItemCount[live] = mItemCount[cluster];
+					mItemCount[cluster] = empty;
+				}
+				live += 1;
+			}
+		} // cluster
+		for (int cluster = live; cluster < mTotalPrototypeVectors; cluster++)
+		{
+			Arrays.fill(mPrototypeVector, cluster * mWords, (cluster + 1) * mWords, 0L);
+			mMembers[cluster] = 0;
+			mHead[cluster] = -1;
+			mMemberCount[cluster] = 0;
+			mPrototypeMagnitude[cluster] = 0;
+			mItemCount[cluster].clear();
+		}
+		for (int customer = 0; customer < mCustomers; customer++)
+		{
+			if (mMembership[customer] >= 0)
+			{
+				mMembership[customer] = map[mMembership[customer]];
+			}
+		}
+
+		resizePrototypes(Math.max(mInitialPrototypeVectors, live * 2));
+
+		// Postings of the moved prototypes.
+		for (int cluster = 0; cluster < live; cluster++)
+		{
+			int pBase = cluster * mWords;
+			for (int w = 0; w < mWords; w++)
+			{
+				long bits = mPrototypeVector[pBase + w];
+				while (bits != 0L)
+				{
+					addPosting((w << 6) + Long.numberOfTrailingZeros(bits), cluster);
+					bits &= bits - 1L;
+				}
+			} // w
+		} // cluster
+		return live;
+	}
+
+	/**
+	 * Builds the per-cluster item rankings from the current clusters and keeps them up to date from now on, for
+	 * recommend().
+	 */
+	public void enableRecommendations()
+	{
+		mRecommending = true;
+		buildRecommendationTables();
+		return;
+	}
+
+	private void buildRecommendationTables()
+	{
+		mItemOrder = new int[mTotalPrototypeVectors][];
+		mItemRank = new CountTable[mTotalPrototypeVectors];
+		mAtLeast = new int[mTotalPrototypeVectors][];
+		for (int cluster = 0; cluster < mTotalPrototypeVectors; cluster++)
+		{
+			// The items the members bought, in ascending order so that equal counts keep item order.
+			CountTable itemCount = mItemCount[cluster];
+			int items[] = new int[itemCount.mEntries];
+			int bought = 0;
+			for (int slot = 0; slot < itemCount.mKey.length; slot++)
+			{
+				if (itemCount.mKey[slot] >= 0)
+				{
+					items[bought] = itemCount.mKey[slot];
+					bought += 1;
+				}
+			}
+			Arrays.sort(items);
+
+			// Counting sort on the item counts, highest first.
+			int atLeast[] = new int[mMemberCount[cluster] + 2];
+			for (int i = 0; i < items.length; i++)
+			{
+				atLeast[itemCount.get(items[i])] += 1;
+			}
+			for (int c = atLeast.length - 2; c >= 0; c--)
+			{
+				atLeast[c] += atLeast[c + 1];
+			}
+			int next[] = new int[atLeast.length];
+			for (int c = 0; c < atLeast.length - 1; c++)
+			{
+				next[c] = atLeast[c + 1];
+			}
+			int order[] = new int[Math.max(4, items.length)];
+			CountTable rank = new CountTable();
+			for (int i = 0; i < items.length; i++)
+			{
+				int count = itemCount.get(items[i]);
+				order[next[count]] = items[i];
+				rank.put(items[i], next[count]);
+				next[count] += 1;
+			} // i
+			mItemOrder[cluster] = order;
+			mItemRank[cluster] = rank;
+			mAtLeast[cluster] = atLeast;
+		} // cluster
+		return;
+	}
+
+	private void reorderItem(final int cluster, final int item, final int count, final int delta)
+	{
+		int atLeast[] = mAtLeast[cluster];
+		if (delta > 0)
+		{
+			if (count + 2 > atLeast.length)
+			{
+				atLeast = Arrays.copyOf(atLeast, atLeast.length * 2);
+				mAtLeast[cluster] = atLeast;
+			}
+			if (count == 0)
+			{
+				// A new item for the cluster joins the ranking at its end, the start of the (empty) run of 0s.
+				int size = atLeast[1];
+				if (size == mItemOrder[cluster].length)
+				{
+					mItemOrder[cluster] = Arrays.copyOf(mItemOrder[cluster], size * 2);
+				}
+				mItemOrder[cluster][size] = item;
+				mItemRank[cluster].put(item, size);
+				atLeast[0] = size + 1;
+			}
+			// Swap with the first item of the run, which then grows the run above.
+			swapRanks(cluster, mItemRank[cluster].get(item), atLeast[count + 1]);
+			atLeast[count + 1] += 1;
+		}
+		else
+		{
+			// Swap with the last item of the run, which then joins the run below.
+			swapRanks(cluster, mItemRank[cluster].get(item), atLeast[count] - 1);
+			atLeast[count] -= 1;
+			if (count == 1)
+			{
+				// Nobody in the cluster has it any more: it was moved to the end, and leaves the ranking.
+				mItemRank[cluster].remove(item);
+				atLeast[0] = atLeast[1];
+			}
+		}
+		return;
+	}
+
+	private void swapRanks(final int cluster, final int a, final int b)
+	{
+		int order[] = mItemOrder[cluster];
+		int itemA = order[a];
+		int itemB = order[b];
+		order[a] = itemB;
+		order[b] = itemA;
+		mItemRank[cluster].put(itemA, b);
+		mItemRank[cluster].put(itemB, a);
+		return;
+	}
+
+	/**
+	 * Writes to items[] up to n items most bought in the customer's cluster that the customer has not bought, most
+	 * bought first (equal counts in no particular order), and returns how many were written. Needs
+	 * enableRecommendations().
+	 */
+	public int recommend(int customer, int n, int[] items)
+	{
+		return mMembership[customer] < 0 ? 0 : recommend(mMembership[customer], mDatabase, customer * mWords, n, items);
+	}
+
+	/**
+	 * Same as recommend(int, int, int[]) for any packed basket (mWords words at basket[offset ..]) and cluster.
+	 */
+	public int recommend(int cluster, long[] basket, int offset, int n, int[] items)
+	{
+		if (!mRecommending)
+		{
+			throw new IllegalStateException("Call enableRecommendations() first.");
+		}
+		int order[] = mItemOrder[cluster];
+		int bought = mAtLeast[cluster].length > 1 ? mAtLeast[cluster][1] : 0;
+		int found = 0;
+		for (int rank = 0; rank < bought && found < n; rank++)
+		{
+			int item = order[rank];
+			if ((basket[offset + (item >>> 6)] & (1L << item)) == 0L)
+			{
+				items[found] = item;
+				found += 1;
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Members of the cluster who bought the item.
+	 */
+	public int getItemCount(int cluster, int item)
+	{
+		return mItemCount[cluster].get(item);
+	}
+
+	public void setAutoCompact(boolean autoCompact)
+	{
+		mAutoCompact = autoCompact;
+		return;
+	}
+
+	/**
+	 * Stores one word of a prototype vector, adding the cluster to or removing it from the postings of every item that
+	 * changed.
+	 */
+	private void setPrototypeWord(final int cluster, final int w, final long bits)
+	{
+		int index = cluster * mWords + w;
+		long old = mPrototypeVector[index];
+		long added = bits & ~old;
+		long removed = old & ~bits;
+		mPrototypeVector[index] = bits;
+		if (added != 0L || removed != 0L)
+		{
+			markDirty(cluster);
+		}
+
+		while (added != 0L)
+		{
+			addPosting((w << 6) + Long.numberOfTrailingZeros(added), cluster);
+			added &= added - 1L;
+		}
+		while (removed != 0L)
+		{
+			removePosting((w << 6) + Long.numberOfTrailingZeros(removed), cluster);
+			removed &= removed - 1L;
+		}
+		return;
+	}
+
+	private void addPosting(final int item, final int cluster)
+	{
+		int size = mPostingSize[item];
+		if (size == mPosting[item].length)
+		{
+			mPosting[item] = Arrays.copyOf(mPosting[item], size * 2);
+		}
+		mPosting[item][size] = cluster;
+		mPostingIndex[cluster].put(item, size);
+		mPostingSize[item] = size + 1;
+		return;
+	}
+
+	private void removePosting(final int item, final int cluster)
+	{
+		int last = mPostingSize[item] - 1;
+		int position = mPostingIndex[cluster].get(item);
+		int moved = mPosting[item][last];
+		mPosting[item][position] = moved;
+		mPostingIndex[moved].put(item, position);
+		mPostingIndex[cluster].remove(item);
+		mPostingSize[item] = last;
+		return;
+	}
+
+	private int magnitude(final long[] vector, final int vRow)
+	{
+		int base = vRow * mWords;
+		int totalOnes = 0;
+		for (int w = 0; w < mWords; w++)
+		{
+			totalOnes += Long.bitCount(vector[base + w]);
+		}
+		return totalOnes;
+	}
+
+	public int getMembership(int customer)
+	{
+		return mMembership[customer];
+	}
+
+	public int[] getMemberships()
+	{
+		return mMembership.clone();
+	}
+
+	public int getMembers(int cluster)
+	{
+		return mMembers[cluster];
+	}
+
+	/**
+	 * Number of customers whose membership is this cluster (members() counts the way ART1_mtjones1 does).
+	 */
+	public int getMemberCount(int cluster)
+	{
+		return mMemberCount[cluster];
+	}
+
+	public void copyPrototypeVector(int cluster, long[] dest, int offset)
+	{
+		System.arraycopy(mPrototypeVector, cluster * mWords, dest, offset, mWords);
+		return;
+	}
+
+	public void copyCustomer(int customer, long[] dest, int offset)
+	{
+		System.arraycopy(mDatabase, customer * mWords, dest, offset, mWords);
+		return;
+	}
+
+	public int getWords()
+	{
+		return mWords;
+	}
+
+	public int getPrototypeVectors()
+	{
+		return mPrototypeVectors;
+	}
+
+	public int getPrototypeItem(int cluster, int item)
+	{
+		return (int) (mPrototypeVector[cluster * mWords + (item >>> 6)] >>> item) & 1;
+	}
+
+	public int getCustomerItem(int customer, int item)
+	{
+		return (int) (mDatabase[customer * mWords + (item >>> 6)] >>> item) & 1;
+	}
+
+	public int getItems()
+	{
+		return mItems;
+	}
+
+	public int getCustomers()
+	{
+		return mCustomers;
+	}
+
+	/**
+	 * Current capacity of the prototype store; cluster numbers are below it.
+	 */
+	public int getTotalPrototypeVectors()
+	{
+		return mTotalPrototypeVectors;
+	}
+
+	private void displayCustomerClusters()
+	{
+		for (int cluster = 0; cluster < mTotalPrototypeVectors; cluster++)
+		{
+			System.out.print("\n");
+			System.out.print("ProtoType Vector: " + cluster + ":   ");
+			for (int item = 0; item < mItems; item++)
+			{
+				System.out.print(getPrototypeItem(cluster, item));
+			} // item
+			System.out.print("\n");
+
+			for (int customer = 0; customer < mCustomers; customer++)
+			{
+				if (mMembership[customer] == cluster)
+				{
+					System.out.print("Customer: " + customer + ":           ");
+					for (int item = 0; item < mItems; item++)
+					{
+						System.out.print(getCustomerItem(customer, item));
+					} // item
+					System.out.print("\n");
+				}
+			} // customer
+
+			System.out.print("\n");
+		} // cluster
+		System.out.print("\n");
+		return;
+	}
+
+	/**
+	 * Hash table from items to int values, by open addressing with linear probing and -1 for an empty slot, as in
+	 * ART1_EventStream. A missing item reads as 0.
+	 */
+	private static final class CountTable
+	{
+		private static final int INITIAL_CAPACITY = 16;
+
+		private int mKey[] = new int[INITIAL_CAPACITY];
+		private int mValue[] = new int[INITIAL_CAPACITY];
+		private int mEntries = 0;
+
+		CountTable()
+		{
+			Arrays.fill(mKey, -1);
+			return;
+		}
+
+		int get(int key)
+		{
+			int i = slot(key);
+			return mKey[i] == key ? mValue[i] : 0;
+		}
+
+		void put(int key, int value)
+		{
+			if ((mEntries + 1) * 2 > mKey.length)
+			{
+				grow();
+			}
+			int i = slot(key);
+			if (mKey[i] != key)
+			{
+				mKey[i] = key;
+				mEntries += 1;
+			}
+			mValue[i] = value;
+			return;
+		}
+
+		/**
+		 * Adds delta to the key's value, dropping the key when the sum is 0; returns the sum.
+		 */
+		int add(int key, int delta)
+		{
+			int i = slot(key);
+			if (mKey[i] == key)
+			{
+				int value = mValue[i] + delta;
+				mValue[i] = value;
+				if (value == 0)
+				{
+					removeAt(i);
+				}
+				return value;
+			}
+			if (delta != 0)
+			{
+				put(key, delta);
+			}
+			return delta;
+		}
+
+		void remove(int key)
+		{
+			int i = slot(key);
+			if (mKey[i] == key)
+			{
+				removeAt(i);
+			}
+			return;
+		}
+
+		private void removeAt(final int i)
+		{
+			int mask = mKey.length - 1;
+			mEntries -= 1;
+
+			// Shift the following entries of the probe run back, so that no lookup stops early at the hole.
+			int hole = i;
+			int j = i;
+			while (true)
+			{
+				j = (j + 1) & mask;
+				if (mKey[j] == -1)
+				{
+					break;
+				}
+				if (((j - home(mKey[j])) & mask) >= ((j - hole) & mask))
+				{
+					mKey[hole] = mKey[j];
+					mValue[hole] = mValue[j];
+					hole = j;
+				}
+			}
+			mKey[hole] = -1;
+			return;
+		}
+
+		void clear()
+		{
+			// Back to the initial size, so that a cluster which once was large does not keep its memory.
+			if (mKey.length > INITIAL_CAPACITY)
+			{
+				mKey = new int[INITIAL_CAPACITY];
+				mValue = new int[INITIAL_CAPACITY];
+			}
+			Arrays.fill(mKey, -1);
+			mEntries = 0;
+			return;
+		}
+
+		private void grow()
+		{
+			int oldKey[] = mKey;
+			int oldValue[] = mValue;
+			mKey = new int[oldKey.length * 2];
+			mValue = new int[oldKey.length * 2];
+			Arrays.fill(mKey, -1);
+			for (int j = 0; j < oldKey.length; j++)
+			{
+				if (oldKey[j] != -1)
+				{
+					int i = slot(oldKey[j]);
+					mKey[i] = oldKey[j];
+					mValue[i] = oldValue[j];
+				}
+			}
+			return;
+		}
+
+		private int slot(int key)
+		{
+			int mask = mKey.length - 1;
+			int i = home(key);
+			while (mKey[i] != -1 && mKey[i] != key)
+			{
+				i = (i + 1) & mask;
+			}
+			return i;
+		}
+
+		private int home(int key)
+		{
+			// Fibonacci hashing.
+			return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & (mKey.length - 1);
+		}
+	}
+
+	public static void main(String[] args)
+	{
+		// Same customer database and constants as ART1_mtjones1.
+		int database[][] = new int[][]
+		{
+		{ 0, 0, 0, 0, 0, 1, 0, 0, 1, 0, 0 },
+		{ 0, 1, 0, 0, 0, 0, 0, 1, 0, 0, 1 },
+		{ 0, 0, 0, 1, 0, 0, 1, 0, 0, 1, 0 },
+		{ 0, 0, 0, 0, 1, 0, 0, 1, 0, 0, 1 },
+		{ 1, 0, 0, 1, 0, 0, 0, 0, 0, 1, 0 },
+		{ 0, 0, 0, 0, 1, 0, 0, 0, 0, 0, 1 },
+		{ 1, 0, 0, 1, 0, 0, 0, 0, 0, 0, 0 },
+		{ 0, 0, 1, 0, 0, 0, 0, 0, 1, 0, 0 },
+		{ 0, 0, 0, 0, 1, 0, 0, 1, 0, 0, 0 },
+		{ 0, 0, 1, 0, 0, 1, 0, 0, 1, 0, 0 },
+		{ 1, 0, 0, 1, 0, 0, 0, 0, 0, 0, 0 },
+		{ 0, 0, 0, 0, 1, 0, 0, 0, 0, 0, 1 },
+		{ 0, 1, 0, 0, 0, 0, 0, 0, 0, 0, 0 },
+		{ 1, 0, 1, 0, 1, 0, 1, 0, 1, 0, 1 } };
+
+		ART1_BitPacked art = new ART1_BitPacked(11, database.length, 10, 1.0, 0.6);
+		art.setDatabase(database);
+		art.performART1();
+		art.displayCustomerClusters();
+
+		for (int customer = 0; customer < art.getCustomers(); customer++)
+		{
+			System.out.println("Membership: " + art.getMembership(customer));
+		}
+
+		art.enableRecommendations();
+		int items[] = new int[3];
+		for (int customer = 0; customer < 3; customer++)
+		{
+			int found = art.recommend(customer, items.length, items);
+			System.out.println("Recommended for customer " + customer + ": " + Arrays.toString(Arrays.copyOf(items, found)));
+		}
+
+		art.initialize();
+		int movesPerPass[] = art.performART1UntilConverged();
+		System.out.println("\nWorklist mode: " + movesPerPass.length + " passes, moves per pass " + Arrays.toString(movesPerPass));
+		return;
+	}
+
+}
@@ -0,0 +1,323 @@
+package com.mnemstudio.ART_AdaptiveResonanceTheory.example_4;
+
+import java.util.Random;
+
+/**
+ * Times ART1_BitPacked against the int[] path of ART1_mtjones1 on a synthetic customer database, and checks that both
+ * give the same memberships.
+ *
+ * Customers are drawn from a number of "shopping habits" (random item sets), each basket keeping most of its habit's
+ * items plus a little noise, so the data has clusters to find. Usage:
+ *
+ * <pre>
+ * ART1_BitPackedBenchmark [customers] [items] [habits] [repeats]
+ * </pre>
+ *
+ */
+public class ART1_BitPackedBenchmark
+{
+	private static final int TOTAL_PROTOTYPE_VECTORS = 1024;
+	private static final double BETA = 1.0;
+	private static final double VIGILANCE = 0.6;
+	private static final long SEED = 42L;
+
+	/**
+	 * performART1() of ART1_mtjones1, unchanged except that the sizes come from the database instead of constants.
+	 */
+	static class IntPath
+	{
+		private final int MAX_ITEMS;
+		private final int MAX_CUSTOMERS;
+		private final int TOTAL_PROTOTYPE_VECTORS;
+		private final double BETA;
+		private final double VIGILANCE;
+
+		private final int database[][];
+		private final int prototypeVector[][];
+		private final int members[];
+		private final int membership[];
+		private int prototypeVectors = 0;
+
+		IntPath(int[][] database, int totalPrototypeVectors, double beta, double vigilance)
+		{
+			this.database = database;
+			MAX_CUSTOMERS = database.length;
+			MAX_ITEMS = database[0].length;
+			TOTAL_PROTOTYPE_VECTORS = totalPrototypeVectors;
+			BETA = beta;
+			VIGILANCE = vigilance;
+			prototypeVector = new int[TOTAL_PROTOTYPE_VECTORS][MAX_ITEMS];
+			members = new int[TOTAL_PROTOTYPE_VECTORS];
+			membership = new int[MAX_CUSTOMERS];
+			for (int i = 0; i < MAX_CUSTOMERS; i++)
+			{
+				membership[i] = -1;
+			}
+		}
+
+		int[] performART1()
+		{
+			int magPE = 0;
+			int magP = 0;
+			int magE = 0;
+			double result = 0.0;
+			double test = 0.0;
+			boolean done = false;
+			int Count = ART1_BitPacked.DEFAULT_COUNT;
+
+			while (!done)
+			{
+				done = true;
+				for (int i = 0; i < MAX_CUSTOMERS; i++)
+				{
+					for (int PVec = 0; PVec < TOTAL_PROTOTYPE_VECTORS; PVec++)
+					{
+						if (members[PVec] > 0)
+						{
+							int ANDResult[] = vectorBitwiseAND(database, i, prototypeVector, PVec);
+
+							magPE = vectorMagnitude(ANDResult);
+							magP = vectorMagnitude(prototypeVector, PVec);
+							magE = vectorMagnitude(database, i);
+
+							result = (double) magPE / (BETA + (double) magP);
+
+							test = (double) magE / (BETA + (double) MAX_ITEMS);
+
+							if (result > test)
+							{
+								if (((double) magPE / (double) magE) < VIGILANCE)
+								{
+									int old = 0;
+									if (membership[i] != PVec)
+									{
+										old = membership[i];
+										membership[i] = PVec;
+
+										if (old >= 0)
+										{
+											members[old] -= 1;
+											if (members[old] == 0)
+											{
+												prototypeVectors -= 1;
+											}
+											members[PVec] += 1;
+											if ((old >= 0) && (old < TOTAL_PROTOTYPE_VECTORS))
+											{
+												updatePrototypeVectors(old);
+											}
+											updatePrototypeVectors(PVec);
+											done = false;
+											break;
+										}
+									}
+								}
+							}
+						}
+					} // PVec.
+
+					if (membership[i] == -1)
+					{
+						membership[i] = createNewPrototypeVector(database, i);
+						done = false;
+					}
+
+				} // for Customers loop.
+
+				if (Count <= 0)
+				{
+					break;
+				}
+				else
+				{
+					Count -= 1;
+				}
+			}
+			return membership;
+		}
+
+		private void updatePrototypeVectors(final int Cluster)
+		{
+			boolean first = true;
+			if (Cluster >= 0)
+			{
+				for (int Item = 0; Item < MAX_ITEMS; Item++)
+				{
+					prototypeVector[Cluster][Item] = 0;
+				} // Item
+				for (int Customer = 0; Customer < MAX_CUSTOMERS; Customer++)
+				{
+					if (membership[Customer] == Cluster)
+					{
+						if (first)
+						{
+							for (int Item = 0; Item < MAX_ITEMS; Item++)
+							{
+								prototypeVector[Cluster][Item] = database[Customer][Item];
+							} // Item
+							first = false;
+						}
+						else
+						{
+							for (int Item = 0; Item < MAX_ITEMS; Item++)
+							{
+								prototypeVector[Cluster][Item] = prototypeVector[Cluster][Item] * database[Customer][Item];
+							} // Item
+						}
+					}
+				} // Customer
+			}
+			return;
+		}
+
+		private int createNewPrototypeVector(final int[][] vector, final int vRow)
+		{
+			int cluster;
+			for (cluster = 0; cluster < TOTAL_PROTOTYPE_VECTORS; cluster++)
+			{
+				if (members[cluster] == 0)
+				{
+					break;
+				}
+			}
+			if (cluster == TOTAL_PROTOTYPE_VECTORS - 1)
+			{
+				prototypeVectors += 1;
+			}
+			for (int i = 0; i < MAX_ITEMS; i++)
+			{
+				prototypeVector[cluster][i] = vector[vRow][i];
+			}
+			members[cluster] = 1;
+			return cluster;
+		}
+
+		private int[] vectorBitwiseAND(final int[][] v, final int vRow, final int[][] w, final int wRow)
+		{
+			int ANDResult[] = new int[MAX_ITEMS];
+			for (int i = 0; i < MAX_ITEMS; i++)
+			{
+				ANDResult[i] = (v[vRow][i] * w[wRow][i]);
+			}
+			return ANDResult;
+		}
+
+		private int vectorMagnitude(final int[] vector)
+		{
+			int totalOnes = 0;
+			for (int i = 0; i < MAX_ITEMS; i++)
+			{
+				if (vector[i] == 1)
+				{
+					totalOnes += 1;
+				}
+			}
+			return totalOnes;
+		}
+
+		private int vectorMagnitude(final int[][] vector, final int vRow)
+		{
+			int totalOnes = 0;
+			for (int i = 0; i < MAX_ITEMS; i++)
+			{
+				if (vector[vRow][i] == 1)
+				{
+					totalOnes += 1;
+				}
+			}
+			return totalOnes;
+		}
+	}
+
+	/**
+	 * Builds a customers x items 0/1 database from a number of random shopping habits.
+	 */
+	static int[][] makeDatabase(int customers, int items, int habits, long seed)
+	{
+		Random random = new Random(seed);
+		int habitSize = Math.max(2, items / 16);
+		int habit[][] = new int[habits][habitSize];
+		for (int h = 0; h < habits; h++)
+		{
+			for (int k = 0; k < habitSize; k++)
+			{
+				habit[h][k] = random.nextInt(items);
+			}
+		} // h
+
+		int database[][] = new int[customers][items];
+		for (int c = 0; c < customers; c++)
+		{
+			int h = random.nextInt(habits);
+			for (int k = 0; k < habitSize; k++)
+			{
+				if (random.nextDouble() < 0.8)
+				{
+					database[c][habit[h][k]] = 1;
+				}
+			} // k
+			// A couple of impulse buys.
+			database[c][random.nextInt(items)] = 1;
+			database[c][random.nextInt(items)] = 1;
+		} // c
+		return database;
+	}
+
+	private static int[][] copyOf(int[][] database)
+	{
+		int copy[][] = new int[database.length][];
+		for (int i = 0; i < database.length; i++)
+		{
+			copy[i] = database[i].clone();
+		}
+		return copy;
+	}
+
+	public static void main(String[] args)
+	{
+		int customers = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+		int items = args.length > 1 ? Integer.parseInt(args[1]) : 1024;
+		int habits = args.length > 2 ? Integer.parseInt(args[2]) : 40;
+		int repeats = args.length > 3 ? Integer.parseInt(args[3]) : 2;
+
+		int database[][] = makeDatabase(customers, items, habits, SEED);
+		System.out.println("Customers: " + customers + ", items: " + items + ", habits: " + habits);
+
+		long bestInt = Long.MAX_VALUE;
+		long bestBits = Long.MAX_VALUE;
+		int intMembership[] = null;
+		int bitsMembership[] = null;
+
+		for (int r = 0; r < repeats; r++)
+		{
+			IntPath intPath = new IntPath(copyOf(database), TOTAL_PROTOTYPE_VECTORS, BETA, VIGILANCE);
+			long start = System.nanoTime();
+			intMembership = intPath.performART1();
+			bestInt = Math.min(bestInt, System.nanoTime() - start);
+
+			ART1_BitPacked bits = new ART1_BitPacked(items, customers, TOTAL_PROTOTYPE_VECTORS, BETA, VIGILANCE);
+			bits.setDatabase(database);
+			start = System.nanoTime();
+			bits.performART1();
+			bestBits = Math.min(bestBits, System.nanoTime() - start);
+			bitsMembership = bits.getMemberships();
+		} // r
+
+		int mismatches = 0;
+		for (int i = 0; i < customers; i++)
+		{
+			if (intMembership[i] != bitsMembership[i])
+			{
+				mismatches += 1;
+			}
+		}
+
+		System.out.println("int[] path:      " + (bestInt / 1000000) + " ms");
+		System.out.println("bit-packed path: " + (bestBits / 1000000) + " ms");
+		System.out.println(String.format("Speed-up: %.1fx", (double) bestInt / (double) bestBits));
+		System.out.println("Database memory: " + ((long) customers * items * 4L / 1024L) + " KB as int[], " + ((long) customers * ART1_BitPacked.wordsFor(items) * 8L / 1024L) + " KB bit-packed");
+		System.out.println("Membership mismatches: " + mismatches);
+		return;
+	}
+
+}
@@ -0,0 +1,411 @@
+package com.mnemstudio.ART_AdaptiveResonanceTheory.example_4;
+
+import java.util.Random;
+
+/**
+ * Adaptive Resonance Theory
+ *
+ * Top-k similar-customer search for the personalization use case of ART1_mtjones1, using the ART1 clusters as a coarse
+ * index.
+ *
+ * A search is built from a clustered ART1_BitPacked. It copies the customer rows so that the members of each cluster
+ * lie next to each other, and keeps a profile of every cluster that has members: the fraction of its members that
+ * bought each item. A query basket is first scored against the cluster profiles; only the members of the "nprobe" best
+ * clusters are then scored, and the k most similar of them returned. nprobe is the exactness knob: with nprobe =
+ * getClusters() every customer is scored and the result is exact, smaller values trade recall for speed. Similarity is
+ * the Jaccard index |A AND B| / |A OR B| or the overlap coefficient |A AND B| / min(|A|, |B|), both computed a word at
+ * a time with Long.bitCount.
+ *
+ * The profiles stand in for the prototype vectors: a prototype is the AND of all its members, which for a large
+ * cluster of noisy baskets is nearly empty and says little about where a basket's neighbours are. The profile gives
+ * the expected |A AND B| between the basket and a member of the cluster, from which the same similarity is estimated.
+ *
+ * The search does not change after it is built (re-build it after re-clustering), and every query uses its own
+ * scratch space, so any number of threads can query it at once.
+ *
+ */
+public class ART1_CustomerSearch
+{
+	public static final int JACCARD = 0;
+	public static final int OVERLAP = 1;
+
+	private final int mItems;
+	private final int mWords;
+	private final int mSimilarity;
+
+	// Customer rows grouped by cluster: row r is customer mCustomer[r], cluster c has rows [mClusterStart[c],
+	// mClusterStart[c + 1]).
+	private final long mRows[];
+	private final int mCustomer[];
+	private final int mRowMagnitude[];
+	private final int mClusterStart[];
+
+	// Cluster profiles: mProfile[c * mItems + item] is the fraction of members of cluster c who bought item, and
+	// mMeanMagnitude[c] the mean basket size. mClusterNumber[c] is the ART1_BitPacked number of cluster c.
+	private final double mProfile[];
+	private final double mMeanMagnitude[];
+	private final int mClusterNumber[];
+
+	public ART1_CustomerSearch(ART1_BitPacked art, int similarity)
+	{
+		if (similarity != JACCARD && similarity != OVERLAP)
+		{
+			throw new IllegalArgumentException("Unknown similarity: " + similarity);
+		}
+		mItems = art.getItems();
+		mWords = art.getWords();
+		mSimilarity = similarity;
+
+		int customers = art.getCustomers();
+		int total = art.getTotalPrototypeVectors();
+
+		// Count the members of each cluster, and number the non-empty clusters.
+		int count[] = new int[total];
+		for (int customer = 0; customer < customers; customer++)
+		{
+			if (art.getMembership(customer) >= 0)
+			{
+				count[art.getMembership(customer)] += 1;
+			}
+		}
+		int clusters = 0;
+		int index[] = new int[total];
+		for (int cluster = 0; cluster < total; cluster++)
+		{
+			index[cluster] = count[cluster] > 0 ? clusters++ : -1;
+		}
+
+		mClusterNumber = new int[clusters];
+		mClusterStart = new int[clusters + 1];
+		for (int cluster = 0; cluster < total; cluster++)
+		{
+			int c = index[cluster];
+			if (c >= 0)
+			{
+				mClusterNumber[c] = cluster;
+				mClusterStart[c + 1] = mClusterStart[c] + count[cluster];
+			}
+		} // cluster
+
+		int rows = mClusterStart[clusters];
+		mRows = new long[rows * mWords];
+		mCustomer = new int[rows];
+		mRowMagnitude = new int[rows];
+		int fill[] = new int[clusters];
+		for (int customer = 0; customer < customers; customer++)
+		{
+			if (art.getMembership(customer) >= 0)
+			{
+				int c = index[art.getMembership(customer)];
+				int row = mClusterStart[c] + fill[c];
+				fill[c] += 1;
+				art.copyCustomer(customer, mRows, row * mWords);
+				mCustomer[row] = customer;
+				mRowMagnitude[row] = magnitude(mRows, row * mWords);
+			}
+		} // customer
+
+		mProfile = new double[clusters * mItems];
+		mMeanMagnitude = new double[clusters];
+		for (int c = 0; c < clusters; c++)
+		{
+			double size = (double) (mClusterStart[c + 1] - mClusterStart[c]);
+			for (int row = mClusterStart[c]; row < mClusterStart[c + 1]; row++)
+			{
+				for (int w = 0; w < mWords; w++)
+				{
+					long bits = mRows[row * mWords + w];
+					while (bits != 0L)
+					{
+						mProfile[c * mItems + (w << 6) + Long.numberOfTrailingZeros(bits)] += 1.0 / size;
+						bits &= bits - 1L;
+					}
+				} // w
+				mMeanMagnitude[c] += (double) mRowMagnitude[row] / size;
+			} // row
+		} // c
+		return;
+	}
+
+	/**
+	 * Finds up to k customers most similar to a 0/1 basket, as used in ART1_mtjones1.database. Returns them best first.
+	 */
+	public int[] search(int[] basket, int k, int nprobe)
+	{
+		long packed[] = new long[mWords];
+		for (int item = 0; item < mItems; item++)
+		{
+			if (basket[item] == 1)
+			{
+				packed[item >>> 6] |= 1L << item;
+			}
+		}
+		int customers[] = new int[k];
+		int found = search(packed, 0, k, nprobe, -1, customers, null);
+		int result[] = new int[found];
+		System.arraycopy(customers, 0, result, 0, found);
+		return result;
+	}
+
+	/**
+	 * Finds up to k customers most similar to the packed basket at basket[offset ..], probing the members of the nprobe
+	 * clusters whose profiles are most similar to it. Customer "exclude" (-1 for none) is skipped, so that a customer
+	 * can be looked up with its own row. The customers are written to customers[] best first (ties to the lower
+	 * customer number), their similarities to scores[] unless it is null, and the number found is returned.
+	 */
+	public int search(long[] basket, int offset, int k, int nprobe, int exclude, int[] customers, double[] scores)
+	{
+		int basketMagnitude = magnitude(basket, offset);
+
+		// The clusters to probe, by the expected similarity to one of their members.
+		TopK probe = new TopK(Math.max(0, Math.min(nprobe, getClusters())));
+		for (int c = 0; c < getClusters(); c++)
+		{
+			double magAB = 0.0;
+			int pBase = c * mItems;
+			for (int w = 0; w < mWords; w++)
+			{
+				long bits = basket[offset + w];
+				while (bits != 0L)
+				{
+					magAB += mProfile[pBase + (w << 6) + Long.numberOfTrailingZeros(bits)];
+					bits &= bits - 1L;
+				}
+			} // w
+			probe.offer(c, similarity(magAB, basketMagnitude, mMeanMagnitude[c]));
+		} // c
+
+		TopK best = new TopK(k);
+		for (int p = 0; p < probe.size; p++)
+		{
+			int c = probe.id[p];
+			for (int row = mClusterStart[c]; row < mClusterStart[c + 1]; row++)
+			{
+				if (mCustomer[row] != exclude)
+				{
+					int magAB = intersection(basket, offset, mRows, row * mWords);
+					best.offer(mCustomer[row], similarity(magAB, basketMagnitude, mRowMagnitude[row]));
+				}
+			} // row
+		} // p
+
+		best.sort();
+		for (int i = 0; i < best.size; i++)
+		{
+			customers[i] = best.id[i];
+			if (scores != null)
+			{
+				scores[i] = best.score[i];
+			}
+		}
+		return best.size;
+	}
+
+	private double similarity(double magAB, double magA, double magB)
+	{
+		if (mSimilarity == JACCARD)
+		{
+			double union = magA + magB - magAB;
+			return union <= 0.0 ? 0.0 : magAB / union;
+		}
+		else
+		{
+			double smaller = Math.min(magA, magB);
+			return smaller <= 0.0 ? 0.0 : magAB / smaller;
+		}
+	}
+
+	private int intersection(final long[] a, final int aBase, final long[] b, final int bBase)
+	{
+		int totalOnes = 0;
+		for (int w = 0; w < mWords; w++)
+		{
+			totalOnes += Long.bitCount(a[aBase + w] & b[bBase + w]);
+		}
+		return totalOnes;
+	}
+
+	private int magnitude(final long[] vector, final int base)
+	{
+		int totalOnes = 0;
+		for (int w = 0; w < mWords; w++)
+		{
+			totalOnes += Long.bitCount(vector[base + w]);
+		}
+		return totalOnes;
+	}
+
+	/**
+	 * The k best (id, score) pairs offered so far, kept in a min-heap with the worst on top. Among equal scores the
+	 * lower id is better.
+	 */
+	private static class TopK
+	{
+		final int id[];
+		final double score[];
+		int size = 0;
+
+		TopK(int k)
+		{
+			id = new int[k];
+			score = new double[k];
+		}
+
+		void offer(int candidate, double value)
+		{
+			if (size < id.length)
+			{
+				id[size] = candidate;
+				score[size] = value;
+				size += 1;
+				siftUp(size - 1);
+			}
+			else if (size > 0 && worse(id[0], score[0], candidate, value))
+			{
+				id[0] = candidate;
+				score[0] = value;
+				siftDown(0, size);
+			}
+			return;
+		}
+
+		/**
+		 * Sorts the kept pairs best first; offer() must not be called afterwards.
+		 */
+		void sort()
+		{
+			for (int end = size - 1; end > 0; end--)
+			{
+				swap(0, end);
+				siftDown(0, end);
+			}
+			return;
+		}
+
+		private static boolean worse(int a, double aScore, int b, double bScore)
+		{
+			return aScore < bScore || (aScore == bScore && a > b);
+		}
+
+		private void siftUp(int i)
+		{
+			while (i > 0)
+			{
+				int parent = (i - 1) >>> 1;
+				if (!worse(id[i], score[i], id[parent], score[parent]))
+				{
+					break;
+				}
+				swap(i, parent);
+				i = parent;
+			}
+			return;
+		}
+
+		private void siftDown(int i, int end)
+		{
+			while (true)
+			{
+				int child = 2 * i + 1;
+				if (child >= end)
+				{
+					break;
+				}
+				if (child + 1 < end && worse(id[child + 1], score[child + 1], id[child], score[child]))
+				{
+					child += 1;
+				}
+				if (!worse(id[child], score[child], id[i], score[i]))
+				{
+					break;
+				}
+				swap(i, child);
+				i = child;
+			}
+			return;
+		}
+
+		private void swap(int a, int b)
+		{
+			int tempId = id[a];
+			id[a] = id[b];
+			id[b] = tempId;
+			double tempScore = score[a];
+			score[a] = score[b];
+			score[b] = tempScore;
+			return;
+		}
+	}
+
+	/**
+	 * Number of clusters with members; nprobe = getClusters() makes a search exact.
+	 */
+	public int getClusters()
+	{
+		return mClusterNumber.length;
+	}
+
+	/**
+	 * The ART1_BitPacked number of the c-th cluster of this search.
+	 */
+	public int getClusterNumber(int c)
+	{
+		return mClusterNumber[c];
+	}
+
+	public static void main(String[] args)
+	{
+		int customers = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+		int items = args.length > 1 ? Integer.parseInt(args[1]) : 1024;
+		int queries = args.length > 2 ? Integer.parseInt(args[2]) : 500;
+		int k = 10;
+
+		int database[][] = ART1_BitPackedBenchmark.makeDatabase(customers, items, 40, 42L);
+		ART1_BitPacked art = new ART1_BitPacked(items, customers, 64, 1.0, 0.6);
+		art.setDatabase(database);
+		art.performART1UntilConverged();
+
+		ART1_CustomerSearch search = new ART1_CustomerSearch(art, JACCARD);
+		System.out.println("Customers: " + customers + ", items: " + items + ", clusters: " + search.getClusters() + ", k = " + k + "\n");
+		System.out.println("  nprobe  us/query  recall");
+
+		// Query with the customers' own baskets; the exact answer probes every cluster.
+		Random random = new Random(1L);
+		int query[] = new int[queries];
+		int exact[][] = new int[queries][k];
+		long basket[] = new long[art.getWords()];
+		for (int q = 0; q < queries; q++)
+		{
+			query[q] = random.nextInt(customers);
+			art.copyCustomer(query[q], basket, 0);
+			search.search(basket, 0, k, search.getClusters(), query[q], exact[q], null);
+		}
+
+		int result[] = new int[k];
+		for (int nprobe = 1; nprobe < 2 * search.getClusters(); nprobe *= 2)
+		{
+			nprobe = Math.min(nprobe, search.getClusters());
+			int hits = 0;
+			long start = System.nanoTime();
+			for (int q = 0; q < queries; q++)
+			{
+				art.copyCustomer(query[q], basket, 0);
+				int found = search.search(basket, 0, k, nprobe, query[q], result, null);
+				for (int i = 0; i < found; i++)
+				{
+					for (int j = 0; j < k; j++)
+					{
+						if (result[i] == exact[q][j])
+						{
+							hits += 1;
+						}
+					}
+				} // i
+			} // q
+			long elapsed = System.nanoTime() - start;
+			System.out.println(String.format("%8d  %8.1f  %6.3f", nprobe, elapsed / 1000.0 / queries, (double) hits / (double) (queries * k)));
+		} // nprobe
+		return;
+	}
+
+}
@@ -0,0 +1,314 @@
+package com.mnemstudio.ART_AdaptiveResonanceTheory.example_4;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Adaptive Resonance Theory
+ *
+ * Event-driven ART1_BitPacked: purchases arrive one at a time as (customer, item, timestamp), and each customer's
+ * basket is the set of items bought within the last "window" time units.
+ *
+ * Every event changes one bit of one basket, through ART1_BitPacked.setCustomerItem(), which keeps the cluster's item
+ * counts and prototype up to date, and then re-tests only that customer against the prototypes with
+ * retestCustomer(): one step of the customers loop of performART1(), which may move it to another cluster or give it a
+ * new one. Purchases leave the window in the order they arrived, so they are kept in a FIFO queue; when one expires,
+ * the item leaves the basket only if the customer has not bought it again since, which a hash table of the latest
+ * purchase time of every (customer, item) in the window tells. Nothing is rebuilt and no other customer is looked at,
+ * so a basket change shows up in the clusters straight away.
+ *
+ * Timestamps must not decrease. Customers other than the one an event is about only move when their own events come,
+ * which is the point of the mode; performART1() or performART1UntilConverged() can still be run now and then to let
+ * everybody settle.
+ *
+ */
+public class ART1_EventStream
+{
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private final ART1_BitPacked mArt;
+	private final long mWindow;
+	private final long mItems;
+
+	private long mNow = Long.MIN_VALUE;
+	private long mEvents = 0;
+	private long mMoves = 0;
+
+	// Purchases still in the window, oldest first, in a circular buffer.
+	private int mQueueCustomer[] = new int[INITIAL_CAPACITY];
+	private int mQueueItem[] = new int[INITIAL_CAPACITY];
+	private long mQueueTime[] = new long[INITIAL_CAPACITY];
+	private int mQueueHead = 0;
+	private int mQueueSize = 0;
+
+	// Latest purchase time of each (customer, item) in the window: open addressing with linear probing on the key
+	// customer * items + item, -1 for an empty slot.
+	private long mKey[] = null;
+	private long mLatest[] = null;
+	private int mEntries = 0;
+
+	public ART1_EventStream(ART1_BitPacked art, long window)
+	{
+		mArt = art;
+		mWindow = window;
+		mItems = art.getItems();
+		mKey = new long[INITIAL_CAPACITY];
+		mLatest = new long[INITIAL_CAPACITY];
+		Arrays.fill(mKey, -1L);
+		return;
+	}
+
+	/**
+	 * Records a purchase: first expires everything older than the window at this timestamp, then adds the item to the
+	 * customer's basket and re-tests the customer.
+	 */
+	public void purchase(int customer, int item, long timestamp)
+	{
+		advanceTo(timestamp);
+
+		enqueue(customer, item, timestamp);
+		put((long) customer * mItems + item, timestamp);
+		mEvents += 1;
+
+		if (mArt.getCustomerItem(customer, item) == 0)
+		{
+			mArt.setCustomerItem(customer, item, true);
+			retest(customer);
+		}
+		return;
+	}
+
+	/**
+	 * Moves the clock forward, removing the purchases that have left the window and re-testing their customers.
+	 */
+	public void advanceTo(long timestamp)
+	{
+		if (timestamp < mNow)
+		{
+			throw new IllegalArgumentException("Timestamp " + timestamp + " is before " + mNow);
+		}
+		mNow = timestamp;
+
+		while (mQueueSize > 0 && mQueueTime[mQueueHead] <= timestamp - mWindow)
+		{
+			int customer = mQueueCustomer[mQueueHead];
+			int item = mQueueItem[mQueueHead];
+			long time = mQueueTime[mQueueHead];
+			mQueueHead = (mQueueHead + 1) % mQueueCustomer.length;
+			mQueueSize -= 1;
+
+			// Only the customer's latest purchase of the item takes it out of the basket.
+			long key = (long) customer * mItems + item;
+			if (get(key) == time)
+			{
+				remove(key);
+				mArt.setCustomerItem(customer, item, false);
+				retest(customer);
+			}
+		}
+		return;
+	}
+
+	private void retest(int customer)
+	{
+		if (mArt.retestCustomer(customer))
+		{
+			mMoves += 1;
+		}
+		return;
+	}
+
+	private void enqueue(int customer, int item, long timestamp)
+	{
+		if (mQueueSize == mQueueCustomer.length)
+		{
+			int capacity = mQueueCustomer.length * 2;
+			int newCustomer[] = new int[capacity];
+			int newItem[] = new int[capacity];
+			long newTime[] = new long[capacity];
+			for (int i = 0; i < mQueueSize; i++)
+			{
+				int from = (mQueueHead + i) % mQueueCustomer.length;
+				newCustomer[i] = mQueueCustomer[from];
+				newItem[i] = mQueueItem[from];
+				newTime[i] = mQueueTime[from];
+			}
+			mQueueCustomer = newCustomer;
+			mQueueItem = newItem;
+			mQueueTime = newTime;
+			mQueueHead = 0;
+		}
+		int tail = (mQueueHead + mQueueSize) % mQueueCustomer.length;
+		mQueueCustomer[tail] = customer;
+		mQueueItem[tail] = item;
+		mQueueTime[tail] = timestamp;
+		mQueueSize += 1;
+		return;
+	}
+
+	private int slot(long key)
+	{
+		int mask = mKey.length - 1;
+		int i = home(key);
+		while (mKey[i] != -1L && mKey[i] != key)
+		{
+			i = (i + 1) & mask;
+		}
+		return i;
+	}
+
+	private int home(long key)
+	{
+		// Fibonacci hashing.
+		return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & (mKey.length - 1);
+	}
+
+	private long get(long key)
+	{
+		int i = slot(key);
+		return mKey[i] == key ? mLatest[i] : Long.MIN_VALUE;
+	}
+
+	private void put(long key, long value)
+	{
+		if ((mEntries + 1) * 2 > mKey.length)
+		{
+			long oldKey[] = mKey;
+			long oldLatest[] = mLatest;
+			mKey = new long[oldKey.length * 2];
+			mLatest = new long[oldKey.length * 2];
+			Arrays.fill(mKey, -1L);
+			for (int j = 0; j < oldKey.length; j++)
+			{
+				if (oldKey[j] != -1L)
+				{
+					int i = slot(oldKey[j]);
+					mKey[i] = oldKey[j];
+					mLatest[i] = oldLatest[j];
+				}
+			}
+		}
+		int i = slot(key);
+		if (mKey[i] != key)
+		{
+			mKey[i] = key;
+			mEntries += 1;
+		}
+		mLatest[i] = value;
+		return;
+	}
+
+	private void remove(long key)
+	{
+		int mask = mKey.length - 1;
+		int i = slot(key);
+		if (mKey[i] != key)
+		{
+			return;
+		}
+		mEntries -= 1;
+
+		// Shift the following entries of the probe run back, so that no lookup stops early at the hole.
+		int hole = i;
+		int j = i;
+		while (true)
+		{
+			j = (j + 1) & mask;
+			if (mKey[j] == -1L)
+			{
+				break;
+			}
+			if (((j - home(mKey[j])) & mask) >= ((j - hole) & mask))
+			{
+				mKey[hole] = mKey[j];
+				mLatest[hole] = mLatest[j];
+				hole = j;
+			}
+		}
+		mKey[hole] = -1L;
+		return;
+	}
+
+	/**
+	 * Purchases in the window, counting repeats of the same item.
+	 */
+	public int getWindowSize()
+	{
+		return mQueueSize;
+	}
+
+	public long getEvents()
+	{
+		return mEvents;
+	}
+
+	/**
+	 * Customers moved or given a new cluster (or dropped from one when their basket emptied) by events so far.
+	 */
+	public long getMoves()
+	{
+		return mMoves;
+	}
+
+	public ART1_BitPacked getArt()
+	{
+		return mArt;
+	}
+
+	public static void main(String[] args)
+	{
+		int customers = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+		int items = args.length > 1 ? Integer.parseInt(args[1]) : 1024;
+		int events = args.length > 2 ? Integer.parseInt(args[2]) : 1000000;
+		long window = args.length > 3 ? Long.parseLong(args[3]) : 200000L;
+		int habits = 40;
+
+		// Every customer shops from one habit, a random set of items, one purchase per time unit over all customers.
+		Random random = new Random(42L);
+		int habitItems[][] = new int[habits][items / 16];
+		for (int h = 0; h < habits; h++)
+		{
+			for (int k = 0; k < habitItems[h].length; k++)
+			{
+				habitItems[h][k] = random.nextInt(items);
+			}
+		}
+		int habitOf[] = new int[customers];
+		for (int customer = 0; customer < customers; customer++)
+		{
+			habitOf[customer] = random.nextInt(habits);
+		}
+
+		ART1_BitPacked art = new ART1_BitPacked(items, customers, 64, 1.0, 0.6);
+		art.enableRecommendations();
+		ART1_EventStream stream = new ART1_EventStream(art, window);
+
+		long start = System.nanoTime();
+		for (long time = 0; time < events; time++)
+		{
+			int customer = random.nextInt(customers);
+			int item;
+			if (random.nextDouble() < 0.9)
+			{
+				int habit[] = habitItems[habitOf[customer]];
+				item = habit[random.nextInt(habit.length)];
+			}
+			else
+			{
+				item = random.nextInt(items); // Impulse buy.
+			}
+			stream.purchase(customer, item, time);
+		}
+		long elapsed = System.nanoTime() - start;
+
+		System.out.println("Customers: " + customers + ", items: " + items + ", window: " + window + " events");
+		System.out.println(String.format("%d events in %d ms, %.2f us/event", stream.getEvents(), elapsed / 1000000, elapsed / 1000.0 / stream.getEvents()));
+		System.out.println("Purchases in the window: " + stream.getWindowSize() + ", clusters: " + art.getPrototypeVectors() + ", moves: " + stream.getMoves());
+
+		start = System.nanoTime();
+		art.performART1();
+		System.out.println("One full performART1() over the same baskets: " + (System.nanoTime() - start) / 1000000 + " ms");
+		return;
+	}
+
+}
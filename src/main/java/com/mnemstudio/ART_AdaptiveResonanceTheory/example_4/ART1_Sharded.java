@@ -0,0 +1,350 @@
+package com.mnemstudio.ART_AdaptiveResonanceTheory.example_4;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Adaptive Resonance Theory
+ *
+ * Parallel version of the ART1_mtjones1 customer clustering, in three steps:
+ *
+ * <pre>
+ * 1. The customers are split into contiguous shards, and each shard is clustered by its own ART1_BitPacked,
+ *    all shards at once on a fork-join pool.
+ * 2. Consolidation: the prototype vector of every non-empty shard cluster becomes one row of a small database, which
+ *    is clustered again by ART1_BitPacked with the same BETA and VIGILANCE. The choice and vigilance tests that put
+ *    customers into shard clusters thus decide which shard clusters end up in the same global cluster, and each
+ *    global prototype is the AND of the shard prototypes it took in.
+ * 3. Final assignment: every customer gets the global cluster of its shard cluster, again in parallel over the shards.
+ * </pre>
+ *
+ * The shards never touch each other's data, so step 1 scales with the number of cores; since ART1 compares each
+ * customer with every prototype of its own shard, small shards are also cheaper in total than one big run. The result
+ * is not identical to a single performART1() over the whole database, as the customers of different shards never see
+ * each other's prototypes while learning, and step 3 only looks clusters up instead of testing customers against the
+ * global prototypes. main() shows how far apart the two are: the non-empty clusters of each, counted the same way from
+ * the memberships, and the fraction of the pairs of customers grouped together by one run that the other also groups
+ * together.
+ *
+ */
+public class ART1_Sharded
+{
+	private final int mItems;
+	private final int mWords;
+	private final int mTotalPrototypeVectors; // Initial capacity per shard, and for the consolidation.
+	private final double mBeta;
+	private final double mVigilance;
+	private final int mShards;
+	private final ForkJoinPool mPool;
+
+	private long mDatabase[] = null;
+	private int mShardStart[] = null; // Customers of shard s are [mShardStart[s], mShardStart[s + 1]).
+	private ART1_BitPacked mShard[] = null;
+
+	// Global cluster of cluster c of shard s, at mClusterBase[s] + c.
+	private int mClusterBase[] = null;
+	private int mGlobalCluster[] = null;
+	private ART1_BitPacked mGlobal = null;
+	private int mGlobalMembers[] = null;
+
+	private int mMembership[] = null;
+
+	public ART1_Sharded(int maxItems, int totalPrototypeVectors, double beta, double vigilance, int shards, ForkJoinPool pool)
+	{
+		mItems = maxItems;
+		mWords = ART1_BitPacked.wordsFor(maxItems);
+		mTotalPrototypeVectors = totalPrototypeVectors;
+		mBeta = beta;
+		mVigilance = vigilance;
+		mShards = shards;
+		mPool = pool;
+		return;
+	}
+
+	/**
+	 * Clusters customers.length 0/1 rows, as used in ART1_mtjones1.database.
+	 */
+	public int[] performART1(int[][] database)
+	{
+		long packed[] = new long[database.length * mWords];
+		for (int customer = 0; customer < database.length; customer++)
+		{
+			for (int item = 0; item < mItems; item++)
+			{
+				if (database[customer][item] == 1)
+				{
+					packed[customer * mWords + (item >>> 6)] |= 1L << item;
+				}
+			} // item
+		} // customer
+		return performART1(packed, database.length);
+	}
+
+	/**
+	 * Clusters the given number of packed customer rows (ART1_BitPacked.wordsFor(maxItems) words each) and returns the
+	 * global cluster of every customer.
+	 */
+	public int[] performART1(long[] database, int customers)
+	{
+		mDatabase = database;
+		mShardStart = new int[mShards + 1];
+		for (int s = 0; s <= mShards; s++)
+		{
+			mShardStart[s] = (int) ((long) customers * s / mShards);
+		}
+		mShard = new ART1_BitPacked[mShards];
+		mMembership = new int[customers];
+
+		mPool.invoke(new ShardTask(0, mShards, true));
+		consolidate();
+		mPool.invoke(new ShardTask(0, mShards, false));
+
+		mDatabase = null;
+		return mMembership;
+	}
+
+	/**
+	 * Steps 1 and 3 over a range of shards, split in halves until single shards are left.
+	 */
+	private class ShardTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final int mFrom;
+		private final int mTo;
+		private final boolean mCluster;
+
+		ShardTask(int from, int to, boolean cluster)
+		{
+			mFrom = from;
+			mTo = to;
+			mCluster = cluster;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if (mTo - mFrom > 1)
+			{
+				int middle = (mFrom + mTo) >>> 1;
+				invokeAll(new ShardTask(mFrom, middle, mCluster), new ShardTask(middle, mTo, mCluster));
+			}
+			else if (mCluster)
+			{
+				clusterShard(mFrom);
+			}
+			else
+			{
+				assignShard(mFrom);
+			}
+			return;
+		}
+	}
+
+	private void clusterShard(final int s)
+	{
+		int first = mShardStart[s];
+		int customers = mShardStart[s + 1] - first;
+		ART1_BitPacked shard = new ART1_BitPacked(mItems, customers, mTotalPrototypeVectors, mBeta, mVigilance);
+		for (int i = 0; i < customers; i++)
+		{
+			shard.setCustomer(i, mDatabase, (first + i) * mWords);
+		}
+		shard.performART1();
+		mShard[s] = shard;
+		return;
+	}
+
+	private void consolidate()
+	{
+		// One row per non-empty shard cluster.
+		mClusterBase = new int[mShards + 1];
+		int rows = 0;
+		for (int s = 0; s < mShards; s++)
+		{
+			mClusterBase[s + 1] = mClusterBase[s] + mShard[s].getTotalPrototypeVectors();
+			for (int cluster = 0; cluster < mShard[s].getTotalPrototypeVectors(); cluster++)
+			{
+				if (mShard[s].getMemberCount(cluster) > 0)
+				{
+					rows += 1;
+				}
+			}
+		} // s
+
+		long prototypes[] = new long[rows * mWords];
+		int rowOf[] = new int[mClusterBase[mShards]];
+		int row = 0;
+		for (int s = 0; s < mShards; s++)
+		{
+			for (int cluster = 0; cluster < mShard[s].getTotalPrototypeVectors(); cluster++)
+			{
+				rowOf[mClusterBase[s] + cluster] = -1;
+				if (mShard[s].getMemberCount(cluster) > 0)
+				{
+					mShard[s].copyPrototypeVector(cluster, prototypes, row * mWords);
+					rowOf[mClusterBase[s] + cluster] = row;
+					row += 1;
+				}
+			}
+		} // s
+
+		mGlobal = new ART1_BitPacked(mItems, rows, mTotalPrototypeVectors, mBeta, mVigilance);
+		for (int r = 0; r < rows; r++)
+		{
+			mGlobal.setCustomer(r, prototypes, r * mWords);
+		}
+		mGlobal.performART1();
+
+		mGlobalCluster = new int[mClusterBase[mShards]];
+		mGlobalMembers = new int[mGlobal.getTotalPrototypeVectors()];
+		for (int s = 0; s < mShards; s++)
+		{
+			for (int cluster = 0; cluster < mShard[s].getTotalPrototypeVectors(); cluster++)
+			{
+				int r = rowOf[mClusterBase[s] + cluster];
+				int global = r >= 0 ? mGlobal.getMembership(r) : -1;
+				mGlobalCluster[mClusterBase[s] + cluster] = global;
+				if (global >= 0)
+				{
+					mGlobalMembers[global] += mShard[s].getMemberCount(cluster);
+				}
+			}
+		} // s
+		return;
+	}
+
+	private void assignShard(final int s)
+	{
+		int first = mShardStart[s];
+		int customers = mShardStart[s + 1] - first;
+		for (int i = 0; i < customers; i++)
+		{
+			mMembership[first + i] = mGlobalCluster[mClusterBase[s] + mShard[s].getMembership(i)];
+		}
+		mShard[s] = null;
+		return;
+	}
+
+	public int getMembership(int customer)
+	{
+		return mMembership[customer];
+	}
+
+	/**
+	 * Customers in a global cluster.
+	 */
+	public int getMembers(int cluster)
+	{
+		return mGlobalMembers[cluster];
+	}
+
+	public int getPrototypeItem(int cluster, int item)
+	{
+		return mGlobal.getPrototypeItem(cluster, item);
+	}
+
+	/**
+	 * Number of global cluster slots; cluster numbers are below it.
+	 */
+	public int getTotalPrototypeVectors()
+	{
+		return mGlobal.getTotalPrototypeVectors();
+	}
+
+	public static void main(String[] args)
+	{
+		int customers = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+		int items = args.length > 1 ? Integer.parseInt(args[1]) : 1024;
+		int shardsPerThread = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+		int totalPrototypeVectors = 1024;
+		int cores = Runtime.getRuntime().availableProcessors();
+
+		int database[][] = ART1_BitPackedBenchmark.makeDatabase(customers, items, 40, 42L);
+		System.out.println("Customers: " + customers + ", items: " + items + ", cores: " + cores);
+
+		ART1_BitPacked single = new ART1_BitPacked(items, customers, totalPrototypeVectors, 1.0, 0.6);
+		single.setDatabase(database);
+		long start = System.nanoTime();
+		single.performART1();
+		int singleMembership[] = single.getMemberships();
+		System.out.println("Single performART1():        " + ((System.nanoTime() - start) / 1000000) + " ms, " + clustersUsed(singleMembership) + " clusters");
+
+		for (int threads = 1; threads <= cores; threads *= 2)
+		{
+			ForkJoinPool pool = new ForkJoinPool(threads);
+			ART1_Sharded sharded = new ART1_Sharded(items, totalPrototypeVectors, 1.0, 0.6, threads * shardsPerThread, pool);
+			start = System.nanoTime();
+			sharded.performART1(database);
+			long elapsed = System.nanoTime() - start;
+			pool.shutdown();
+
+			int membership[] = new int[customers];
+			for (int customer = 0; customer < customers; customer++)
+			{
+				membership[customer] = sharded.getMembership(customer);
+			}
+			double agreement[] = pairAgreement(singleMembership, membership);
+			System.out.println(String.format("Sharded, %2d threads, %3d shards: %d ms, %d clusters; pairs together in both runs: %.3f of the single run's, %.3f of the sharded run's",
+					threads, threads * shardsPerThread, elapsed / 1000000, clustersUsed(membership), agreement[0], agreement[1]));
+		} // threads
+		return;
+	}
+
+	/**
+	 * Clusters with at least one customer, counted from the memberships for both kinds of run alike.
+	 */
+	private static int clustersUsed(int[] membership)
+	{
+		HashSet<Integer> used = new HashSet<Integer>();
+		for (int customer = 0; customer < membership.length; customer++)
+		{
+			if (membership[customer] >= 0)
+			{
+				used.add(membership[customer]);
+			}
+		}
+		return used.size();
+	}
+
+	/**
+	 * Of the pairs of customers in the same cluster in run a, the fraction also together in run b, and the other way
+	 * round. Counted from the table of customers per (cluster in a, cluster in b), without going through the pairs;
+	 * customers without a cluster in either run are left out.
+	 */
+	private static double[] pairAgreement(int[] a, int[] b)
+	{
+		HashMap<Long, Integer> both = new HashMap<Long, Integer>();
+		HashMap<Integer, Integer> inA = new HashMap<Integer, Integer>();
+		HashMap<Integer, Integer> inB = new HashMap<Integer, Integer>();
+		for (int customer = 0; customer < a.length; customer++)
+		{
+			if (a[customer] < 0 || b[customer] < 0)
+			{
+				continue;
+			}
+			Long key = ((long) a[customer] << 32) | b[customer];
+			both.put(key, both.containsKey(key) ? both.get(key) + 1 : 1);
+			inA.put(a[customer], inA.containsKey(a[customer]) ? inA.get(a[customer]) + 1 : 1);
+			inB.put(b[customer], inB.containsKey(b[customer]) ? inB.get(b[customer]) + 1 : 1);
+		}
+		double pairsBoth = pairs(both.values());
+		double pairsA = pairs(inA.values());
+		double pairsB = pairs(inB.values());
+		return new double[] { pairsA > 0 ? pairsBoth / pairsA : 1.0, pairsB > 0 ? pairsBoth / pairsB : 1.0 };
+	}
+
+	private static double pairs(Collection<Integer> counts)
+	{
+		double sum = 0.0;
+		for (int n : counts)
+		{
+			sum += (double) n * (n - 1) / 2.0;
+		}
+		return sum;
+	}
+
+}
@@ -0,0 +1,472 @@
+package com.mnemstudio.LVQ_LearningVectorQuantization;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import com.mnemstudio.dataset.BitDataset;
+
+/**
+ * Learning Vector Quantization.
+ *
+ * LVQ_Network for 0/1 inputs, at a cost per prototype that grows with the number of ones in the input rather than
+ * VEC_LEN.
+ *
+ * For binary x the squared distance expands to ||w||^2 - 2 * (sum of w[j] over the ones of x) + |x|, so with ||w||^2
+ * kept for each prototype, a distance needs only the weights where x is 1. The update needs the same: both
+ * w += alpha * (x - w) and w -= alpha * (x - w) scale the whole row and then add or take alpha at the ones of x. Each
+ * row is therefore kept as scale * v, the scaling is done on the scale alone, and the ones of x are added into v
+ * divided by the new scale. ||w||^2 follows from the same three quantities:
+ *
+ * <pre>
+ * attract: ||w'||^2 = (1 - alpha)^2 ||w||^2 + 2 alpha (1 - alpha) S + alpha^2 |x|
+ * repel:   ||w'||^2 = (1 + alpha)^2 ||w||^2 - 2 alpha (1 + alpha) S + alpha^2 |x|
+ * </pre>
+ *
+ * where S is the sum of w over the ones of x, already known from the search. When the scale leaves
+ * [RESCALE_LIMIT, 1 / RESCALE_LIMIT], the row is multiplied out and ||w||^2 summed afresh, which also clears the
+ * rounding the incremental updates have gathered.
+ *
+ * Inputs are lists of the indices of the ones, or bitsets of 64 components per long. The distances are the same as
+ * LVQ_Example1's up to rounding, so a near tie can go the other way; ties go to the lowest prototype number.
+ *
+ */
+public class LVQ_BinaryNetwork
+{
+	private static final double RESCALE_LIMIT = 1e-30;
+
+	private final int clusters;
+	private final int vecLen;
+	private final double decayRate;
+	private final double minAlpha;
+	private double alpha;
+
+	private final double v[]; // Row i of the weight matrix is scale[i] * v[i * vecLen .. (i + 1) * vecLen - 1].
+	private final double scale[];
+	private final double norm[]; // ||w_i||^2.
+
+	private double winnerSum = 0.0; // Sum of the winner's weights over the ones of the last input searched.
+	private final int ones[]; // Indices of the ones of the input being searched, so that a query allocates nothing.
+
+	public LVQ_BinaryNetwork(int clusters, int vecLen, double alpha, double decayRate, double minAlpha)
+	{
+		this.clusters = clusters;
+		this.vecLen = vecLen;
+		this.alpha = alpha;
+		this.decayRate = decayRate;
+		this.minAlpha = minAlpha;
+
+		v = new double[clusters * vecLen];
+		scale = new double[clusters];
+		norm = new double[clusters];
+		ones = new int[vecLen];
+		for (int i = 0; i < clusters; i++)
+		{
+			scale[i] = 1.0;
+		}
+		return;
+	}
+
+	public void initializeWeights(int clusterNumber, int trainingPattern[])
+	{
+		for (int i = 0; i < vecLen; i++)
+		{
+			v[clusterNumber * vecLen + i] = trainingPattern[i];
+		}
+		scale[clusterNumber] = 1.0;
+		rescale(clusterNumber);
+		return;
+	}
+
+	/**
+	 * The training loop of LVQ_Example1, on 0/1 patterns.
+	 */
+	public void training(int[][] patterns, int[] targets)
+	{
+		int ones[][] = new int[patterns.length][];
+		for (int vecNum = 0; vecNum < patterns.length; vecNum++)
+		{
+			ones[vecNum] = toIndices(patterns[vecNum]);
+		}
+		trainingIndexed(ones, targets);
+		return;
+	}
+
+	/**
+	 * The training loop of LVQ_Example1, on the index lists of the ones of the patterns.
+	 */
+	public void trainingIndexed(int[][] ones, int[] targets)
+	{
+		while (alpha > minAlpha)
+		{
+			for (int vecNum = 0; vecNum < ones.length; vecNum++)
+			{
+				int dMin = nearest(ones[vecNum], ones[vecNum].length);
+
+				// Update the weights on the winning unit.
+				updateWeights(ones[vecNum], ones[vecNum].length, dMin == targets[vecNum], dMin);
+			} // vecNum
+
+			// Reduce the learning rate.
+			alpha = decayRate * alpha;
+		}
+		return;
+	}
+
+	/**
+	 * The training loop of LVQ_Example1 on the rows of a BitDataset, with their labels as the targets; each row is
+	 * read from the mapping when its turn comes.
+	 */
+	public void training(BitDataset data)
+	{
+		checkColumns(data);
+		while (alpha > minAlpha)
+		{
+			for (int vecNum = 0; vecNum < data.getRows(); vecNum++)
+			{
+				int count = data.ones(vecNum, ones);
+				int dMin = nearest(ones, count);
+				updateWeights(ones, count, dMin == data.getLabel(vecNum), dMin);
+			} // vecNum
+
+			// Reduce the learning rate.
+			alpha = decayRate * alpha;
+		}
+		return;
+	}
+
+	/**
+	 * The cluster of row "row" of a BitDataset.
+	 */
+	public int getCluster(BitDataset data, int row)
+	{
+		checkColumns(data);
+		return nearest(ones, data.ones(row, ones));
+	}
+
+	private void checkColumns(BitDataset data)
+	{
+		if (data.getColumns() != vecLen)
+		{
+			throw new IllegalArgumentException("Dataset rows have " + data.getColumns() + " components, the network " + vecLen);
+		}
+		return;
+	}
+
+	public int getCluster(int[] inputPattern)
+	{
+		int count = 0;
+		for (int j = 0; j < inputPattern.length; j++)
+		{
+			if (inputPattern[j] != 0)
+			{
+				ones[count++] = j;
+			}
+		}
+		return nearest(ones, count);
+	}
+
+	/**
+	 * The cluster of the pattern whose ones are at ones[0 .. count - 1].
+	 */
+	public int getClusterIndexed(int[] ones, int count)
+	{
+		return nearest(ones, count);
+	}
+
+	/**
+	 * The cluster of the pattern with bit j % 64 of bits[j / 64] set for each one.
+	 */
+	public int getCluster(long[] bits)
+	{
+		int count = 0;
+		for (int word = 0; word < bits.length; word++)
+		{
+			long rest = bits[word];
+			while (rest != 0L)
+			{
+				ones[count++] = (word << 6) + Long.numberOfTrailingZeros(rest);
+				rest &= rest - 1L;
+			}
+		}
+		return nearest(ones, count);
+	}
+
+	private int nearest(int[] ones, int count)
+	{
+		int winner = 0;
+		double best = Double.POSITIVE_INFINITY;
+		for (int k = 0; k < clusters; k++)
+		{
+			int base = k * vecLen;
+			double sum = 0.0;
+			for (int i = 0; i < count; i++)
+			{
+				sum += v[base + ones[i]];
+			}
+			sum *= scale[k];
+
+			// Strictly smaller, so that ties go to the lowest prototype.
+			double distance = norm[k] - 2.0 * sum + count;
+			if (distance < best)
+			{
+				best = distance;
+				winner = k;
+				winnerSum = sum;
+			}
+		} // k
+		return winner;
+	}
+
+	private void updateWeights(int[] ones, int count, boolean attract, int dMin)
+	{
+		int base = dMin * vecLen;
+		double factor = attract ? 1.0 - alpha : 1.0 + alpha;
+		double step = attract ? alpha : -alpha;
+		double newScale = scale[dMin] * factor;
+
+		if (newScale < RESCALE_LIMIT || newScale > 1.0 / RESCALE_LIMIT)
+		{
+			// Multiply the row out and do the update on the weights themselves.
+			for (int j = 0; j < vecLen; j++)
+			{
+				v[base + j] *= newScale;
+			}
+			for (int i = 0; i < count; i++)
+			{
+				v[base + ones[i]] += step;
+			}
+			scale[dMin] = 1.0;
+			rescale(dMin);
+			return;
+		}
+
+		for (int i = 0; i < count; i++)
+		{
+			v[base + ones[i]] += step / newScale;
+		}
+		scale[dMin] = newScale;
+		norm[dMin] = factor * factor * norm[dMin] + 2.0 * step * factor * winnerSum + alpha * alpha * count;
+		return;
+	}
+
+	/**
+	 * Folds the scale of the row into its weights and sums ||w||^2 afresh.
+	 */
+	private void rescale(int cluster)
+	{
+		int base = cluster * vecLen;
+		double sum = 0.0;
+		for (int j = 0; j < vecLen; j++)
+		{
+			v[base + j] *= scale[cluster];
+			sum += v[base + j] * v[base + j];
+		}
+		scale[cluster] = 1.0;
+		norm[cluster] = sum;
+		return;
+	}
+
+	public static int[] toIndices(int[] pattern)
+	{
+		int count = 0;
+		for (int j = 0; j < pattern.length; j++)
+		{
+			if (pattern[j] != 0)
+			{
+				count += 1;
+			}
+		}
+		int ones[] = new int[count];
+		count = 0;
+		for (int j = 0; j < pattern.length; j++)
+		{
+			if (pattern[j] != 0)
+			{
+				ones[count++] = j;
+			}
+		}
+		return ones;
+	}
+
+	public static long[] toBits(int[] pattern)
+	{
+		long bits[] = new long[(pattern.length + 63) >>> 6];
+		for (int j = 0; j < pattern.length; j++)
+		{
+			if (pattern[j] != 0)
+			{
+				bits[j >>> 6] |= 1L << j;
+			}
+		}
+		return bits;
+	}
+
+	public double getAlpha()
+	{
+		return alpha;
+	}
+
+	public int getClusters()
+	{
+		return clusters;
+	}
+
+	public int getVecLen()
+	{
+		return vecLen;
+	}
+
+	public double getWeight(int cluster, int i)
+	{
+		return scale[cluster] * v[cluster * vecLen + i];
+	}
+
+	/**
+	 * ||w||^2 of the prototype, as kept up to date by the updates.
+	 */
+	public double getNorm(int cluster)
+	{
+		return norm[cluster];
+	}
+
+	public static void main(String[] args) throws IOException
+	{
+		int clusters = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+		int vecLen = args.length > 1 ? Integer.parseInt(args[1]) : 4096;
+		double density = args.length > 2 ? Double.parseDouble(args[2]) : 0.02;
+		int perClass = 10;
+
+		// The glyphs of LVQ_Example1 first.
+		LVQ_Example1.initialize();
+		int glyph[][] = LVQ_Example1.getPatterns();
+		LVQ_BinaryNetwork binary = new LVQ_BinaryNetwork(7, 63, 0.6, 0.96, 0.01);
+		LVQ_Network dense = new LVQ_Network(7, 63, 0.6, 0.96, 0.01);
+		for (int i = 0; i < 7; i++)
+		{
+			binary.initializeWeights(i, glyph[i]);
+			dense.initializeWeights(i, glyph[i]);
+		}
+		binary.training(glyph, LVQ_Example1.getTargets());
+		dense.training(glyph, LVQ_Example1.getTargets());
+		int mismatches = 0;
+		for (int i = 0; i < glyph.length; i++)
+		{
+			if (binary.getCluster(LVQ_BinaryNetwork.toBits(glyph[i])) != dense.getCluster(glyph[i]))
+			{
+				mismatches += 1;
+			}
+		}
+		System.out.println("Glyphs: " + mismatches + " memberships differ from LVQ_Network, largest weight difference "
+				+ largestDifference(binary, dense));
+
+		// The glyphs again, trained from a memory-mapped file of them.
+		File file = File.createTempFile("glyphs", ".bin");
+		file.deleteOnExit();
+		BitDataset.write(file, glyph, LVQ_Example1.getTargets(), LVQ_Example1.getFontNames());
+		BitDataset data = new BitDataset(file);
+		LVQ_BinaryNetwork mapped = new LVQ_BinaryNetwork(7, 63, 0.6, 0.96, 0.01);
+		for (int i = 0; i < 7; i++)
+		{
+			mapped.initializeWeights(i, data.row(i, null));
+		}
+		mapped.training(data);
+		for (int row = 0; row < data.getRows(); row++)
+		{
+			System.out.print(data.getName(row) + " -> " + mapped.getCluster(data, row) + (row % 7 == 6 ? "\n" : ", "));
+		}
+		System.out.println("Glyphs from " + file.getName() + " (" + file.length() + " bytes): largest weight difference " + largestDifference(mapped, binary));
+
+		// Sparse patterns: noisy copies of one random source per class, about density * vecLen ones each.
+		Random random = new Random(5L);
+		int source[][] = new int[clusters][vecLen];
+		for (int c = 0; c < clusters; c++)
+		{
+			for (int j = 0; j < vecLen; j++)
+			{
+				source[c][j] = random.nextDouble() < density ? 1 : 0;
+			}
+		}
+		int pattern[][] = new int[clusters * perClass][];
+		int target[] = new int[pattern.length];
+		for (int i = 0; i < pattern.length; i++)
+		{
+			target[i] = i % clusters;
+			pattern[i] = source[target[i]].clone();
+			for (int j = 0; j < vecLen; j++)
+			{
+				if (pattern[i][j] == 1 ? random.nextDouble() < 0.3 : random.nextDouble() < 0.3 * density)
+				{
+					pattern[i][j] = 1 - pattern[i][j];
+				}
+			}
+		} // i
+
+		binary = new LVQ_BinaryNetwork(clusters, vecLen, 0.6, 0.8, 0.01);
+		dense = new LVQ_Network(clusters, vecLen, 0.6, 0.8, 0.01);
+		dense.setPruning(false);
+		LVQ_Network pruned = new LVQ_Network(clusters, vecLen, 0.6, 0.8, 0.01);
+		for (int c = 0; c < clusters; c++)
+		{
+			binary.initializeWeights(c, pattern[c]);
+			dense.initializeWeights(c, pattern[c]);
+			pruned.initializeWeights(c, pattern[c]);
+		}
+
+		long start = System.nanoTime();
+		dense.training(pattern, target);
+		long denseTime = System.nanoTime() - start;
+		start = System.nanoTime();
+		pruned.training(pattern, target);
+		long prunedTime = System.nanoTime() - start;
+		int ones[][] = new int[pattern.length][];
+		for (int i = 0; i < pattern.length; i++)
+		{
+			ones[i] = toIndices(pattern[i]);
+		}
+		start = System.nanoTime();
+		binary.trainingIndexed(ones, target);
+		long binaryTime = System.nanoTime() - start;
+
+		mismatches = 0;
+		for (int i = 0; i < pattern.length; i++)
+		{
+			if (binary.getClusterIndexed(ones[i], ones[i].length) != dense.getCluster(pattern[i]))
+			{
+				mismatches += 1;
+			}
+		}
+		System.out.println(String.format("%d prototypes, VEC_LEN %d, %.1f ones per pattern, %d patterns", clusters, vecLen,
+				(double) vecLen * density, pattern.length));
+		System.out.println("Training: dense " + denseTime / 1000000 + " ms, pruned " + prunedTime / 1000000 + " ms, binary " + binaryTime / 1000000 + " ms");
+		System.out.println("Memberships that differ: " + mismatches + ", largest weight difference " + largestDifference(binary, dense));
+		return;
+	}
+
+	private static double largestDifference(LVQ_BinaryNetwork binary, LVQ_BinaryNetwork other)
+	{
+		double largest = 0.0;
+		for (int c = 0; c < other.getClusters(); c++)
+		{
+			for (int j = 0; j < other.getVecLen(); j++)
+			{
+				largest = Math.max(largest, Math.abs(binary.getWeight(c, j) - other.getWeight(c, j)));
+			}
+		}
+		return largest;
+	}
+
+	private static double largestDifference(LVQ_BinaryNetwork binary, LVQ_Network dense)
+	{
+		double largest = 0.0;
+		for (int c = 0; c < dense.getClusters(); c++)
+		{
+			for (int j = 0; j < dense.getVecLen(); j++)
+			{
+				largest = Math.max(largest, Math.abs(binary.getWeight(c, j) - dense.getWeight(c, j)));
+			}
+		}
+		return largest;
+	}
+
+}
@@ -0,0 +1,325 @@
+package com.mnemstudio.LVQ_LearningVectorQuantization;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Learning Vector Quantization.
+ *
+ * Read-only copy of a trained LVQ network, for classifying on any number of threads at once.
+ *
+ * LVQ_Network.getCluster() keeps the state of its search (the winner so far, the best sum) in fields, so two threads
+ * calling it at the same time read each other's sums. Here everything a search needs besides the final fields lives in local variables, and the
+ * fields are never written after the constructor, so the object can be shared freely. classify(int[][]) splits a batch
+ * into chunks of CHUNK patterns and runs them on a fork-join pool (the common pool unless one is given).
+ *
+ * The search is the one of LVQ_Network, with the distances between all pairs of prototypes computed once in the
+ * constructor (up to MAX_TABLE prototypes; above that only the early abandon is used): a prototype is skipped when the
+ * triangle inequality puts it further from the input than the best one, and abandoned once its partial sum passes the
+ * best full sum. The result is the winner of the full search, the lowest prototype on ties.
+ *
+ * LVQ_OnlineLearner publishes a new version after every update, made by next(): only the rows of the prototypes that
+ * moved are new, the others are shared with the earlier versions, and so is the table of distances, which stays as
+ * it was computed for version 0. Each version keeps, per prototype, the distance from its row to the row the table
+ * was computed from, and the table's entries are lowered by those before they are used, as LVQ_Network does with its
+ * drifts.
+ *
+ */
+public final class LVQ_Classifier
+{
+	private static final int CHUNK = 256;
+	private static final int MAX_TABLE = 2048;
+	private static final double PRUNING_MARGIN = 1e-9;
+
+	private final long version;
+	private final int clusters;
+	private final int vecLen;
+	private final double rows[][]; // The weights of each prototype; shared between versions.
+	private final int classOf[];
+
+	// gap[i * clusters + k] = ||tableRows[i] - tableRows[k]||, or null; drift[k] = ||rows[k] - tableRows[k]||.
+	private final double gap[];
+	private final double tableRows[][];
+	private final double drift[];
+
+	public LVQ_Classifier(LVQ_Network network)
+	{
+		version = 0;
+		clusters = network.getClusters();
+		vecLen = network.getVecLen();
+		rows = new double[clusters][vecLen];
+		classOf = new int[clusters];
+		for (int k = 0; k < clusters; k++)
+		{
+			for (int j = 0; j < vecLen; j++)
+			{
+				rows[k][j] = network.getWeight(k, j);
+			}
+			classOf[k] = network.getClassOf(k);
+		}
+
+		if (clusters <= MAX_TABLE)
+		{
+			gap = new double[clusters * clusters];
+			for (int i = 0; i < clusters; i++)
+			{
+				for (int k = i + 1; k < clusters; k++)
+				{
+					gap[i * clusters + k] = distance(rows[i], rows[k]);
+					gap[k * clusters + i] = gap[i * clusters + k];
+				} // k
+			} // i
+		}
+		else
+		{
+			gap = null;
+		}
+		tableRows = rows.clone();
+		drift = new double[clusters];
+		return;
+	}
+
+	private LVQ_Classifier(LVQ_Classifier previous, double[][] rows, double[] drift)
+	{
+		version = previous.version + 1;
+		clusters = previous.clusters;
+		vecLen = previous.vecLen;
+		this.rows = rows;
+		classOf = previous.classOf;
+		gap = previous.gap;
+		tableRows = previous.tableRows;
+		this.drift = drift;
+		return;
+	}
+
+	/**
+	 * The version that follows this one, with the rows of the prototypes changed[0 .. count - 1] replaced by
+	 * newRows[0 .. count - 1]. Only the outer arrays are copied; the new rows must not be written to afterwards.
+	 */
+	LVQ_Classifier next(int[] changed, int count, double[][] newRows)
+	{
+		double nextRows[][] = rows.clone();
+		double nextDrift[] = drift.clone();
+		for (int c = 0; c < count; c++)
+		{
+			int k = changed[c];
+			nextRows[k] = newRows[c];
+			nextDrift[k] = distance(newRows[c], tableRows[k]);
+		}
+		return new LVQ_Classifier(this, nextRows, nextDrift);
+	}
+
+	private static double distance(double[] a, double[] b)
+	{
+		double sum = 0.0;
+		for (int j = 0; j < a.length; j++)
+		{
+			double difference = a[j] - b[j];
+			sum += difference * difference;
+		}
+		return Math.sqrt(sum);
+	}
+
+	/**
+	 * The winning prototype for the pattern, as LVQ_Network.getCluster().
+	 */
+	public int getCluster(int[] pattern)
+	{
+		int winner = -1;
+		double best = Double.POSITIVE_INFINITY;
+		double bound = Double.POSITIVE_INFINITY;
+		for (int k = 0; k < clusters; k++)
+		{
+			if (gap != null && winner >= 0 && gap[winner * clusters + k] - drift[winner] - drift[k] > bound)
+			{
+				continue;
+			}
+
+			double row[] = rows[k];
+			double sum = 0.0;
+			int j = 0;
+			while (j < vecLen && sum <= best)
+			{
+				int end = Math.min(vecLen, j + 16);
+				for (; j < end; j++)
+				{
+					double difference = row[j] - pattern[j];
+					sum += difference * difference;
+				}
+			}
+			// Strictly smaller, so that ties go to the lowest prototype.
+			if (sum < best)
+			{
+				best = sum;
+				winner = k;
+				bound = 2.0 * Math.sqrt(best) * (1.0 + PRUNING_MARGIN);
+			}
+		} // k
+		return winner;
+	}
+
+	/**
+	 * The class of the winning prototype for the pattern.
+	 */
+	public int classify(int[] pattern)
+	{
+		return classOf[getCluster(pattern)];
+	}
+
+	/**
+	 * The classes of all the patterns, worked out on the common fork-join pool.
+	 */
+	public int[] classify(int[][] batch)
+	{
+		return classify(batch, ForkJoinPool.commonPool());
+	}
+
+	public int[] classify(int[][] batch, ForkJoinPool pool)
+	{
+		int classes[] = new int[batch.length];
+		pool.invoke(new BatchTask(batch, classes, 0, batch.length));
+		return classes;
+	}
+
+	/**
+	 * A range of a batch, split in halves down to CHUNK patterns.
+	 */
+	private class BatchTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final int batch[][];
+		private final int classes[];
+		private final int from;
+		private final int to;
+
+		BatchTask(int[][] batch, int[] classes, int from, int to)
+		{
+			this.batch = batch;
+			this.classes = classes;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if (to - from > CHUNK)
+			{
+				int middle = (from + to) >>> 1;
+				invokeAll(new BatchTask(batch, classes, from, middle), new BatchTask(batch, classes, middle, to));
+			}
+			else
+			{
+				for (int i = from; i < to; i++)
+				{
+					classes[i] = classify(batch[i]);
+				}
+			}
+			return;
+		}
+	}
+
+	/**
+	 * 0 for a classifier made from a network, one more for each next().
+	 */
+	public long getVersion()
+	{
+		return version;
+	}
+
+	public double getWeight(int prototype, int i)
+	{
+		return rows[prototype][i];
+	}
+
+	/**
+	 * True if this version and another hold the very same row object for the prototype, i.e. it was not copied.
+	 */
+	public boolean sharesRow(LVQ_Classifier other, int prototype)
+	{
+		return rows[prototype] == other.rows[prototype];
+	}
+
+	public int getClusters()
+	{
+		return clusters;
+	}
+
+	public int getVecLen()
+	{
+		return vecLen;
+	}
+
+	public int getClassOf(int prototype)
+	{
+		return classOf[prototype];
+	}
+
+	public static void main(String[] args)
+	{
+		int queries = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+		int classes = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+		int vecLen = args.length > 2 ? Integer.parseInt(args[2]) : 63;
+		int cores = Runtime.getRuntime().availableProcessors();
+
+		// Train on glyph-like noisy copies of one source per class, then classify many more copies of the same sources.
+		int target[] = new int[classes * 10];
+		int pattern[][] = LVQ_NetworkBenchmark.makePatterns(classes, 10, vecLen, 0.1, 21L, target);
+		LVQ_Network network = new LVQ_Network(classes, vecLen, 0.1, 0.96, 0.01);
+		for (int c = 0; c < classes; c++)
+		{
+			network.initializeWeights(c, pattern[c]);
+		}
+		network.trainingOLVQ1(pattern, target, 10);
+		LVQ_Classifier classifier = new LVQ_Classifier(network);
+
+		int perClass = (queries + classes - 1) / classes;
+		int expected[] = new int[classes * perClass];
+		int batch[][] = LVQ_NetworkBenchmark.makePatterns(classes, perClass, vecLen, 0.1, 21L, expected);
+		batch = Arrays.copyOf(batch, queries);
+		System.out.println("Prototypes: " + classes + ", VEC_LEN: " + vecLen + ", queries: " + queries + ", cores: " + cores);
+
+		// One call per pattern on one thread, as with LVQ_Example1.getCluster().
+		int single[] = new int[queries];
+		long start = System.nanoTime();
+		for (int i = 0; i < queries; i++)
+		{
+			single[i] = classifier.classify(batch[i]);
+		}
+		long elapsed = System.nanoTime() - start;
+		System.out.println(String.format("Single calls:          %6d ms, %8.0f patterns/s", elapsed / 1000000, queries * 1e9 / elapsed));
+
+		for (int threads = 1; threads <= cores; threads *= 2)
+		{
+			ForkJoinPool pool = new ForkJoinPool(threads);
+			start = System.nanoTime();
+			int batched[] = classifier.classify(batch, pool);
+			elapsed = System.nanoTime() - start;
+			pool.shutdown();
+
+			int mismatches = 0;
+			for (int i = 0; i < queries; i++)
+			{
+				if (batched[i] != single[i])
+				{
+					mismatches += 1;
+				}
+			}
+			System.out.println(String.format("Batch, %2d threads:     %6d ms, %8.0f patterns/s, %d mismatches", threads, elapsed / 1000000, queries * 1e9 / elapsed, mismatches));
+		} // threads
+
+		int correct = 0;
+		for (int i = 0; i < queries; i++)
+		{
+			if (single[i] == expected[i])
+			{
+				correct += 1;
+			}
+		}
+		System.out.println(String.format("Accuracy: %.3f", (double) correct / queries));
+		return;
+	}
+
+}
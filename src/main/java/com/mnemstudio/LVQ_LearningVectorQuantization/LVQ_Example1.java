@@ -24,6 +24,8 @@ package com.mnemstudio.LVQ_LearningVectorQuantization;
  *         known and that all input vectors are expected to fit into these clusters. Neural network LVQ is heavily
  *         dependent on supervised learning.
  * 
+ *         The network itself is an LVQ_Network: training() and getCluster() use its winner search, which skips most of
+ *         the distance arithmetic and still finds the prototype with the smallest squared distance, the lowest on ties.
  * 
  * 
  * 
@@ -39,10 +41,9 @@ public class LVQ_Example1
 	private static final double MIN_ALPHA = 0.01;
 
 	private static double alpha = 0.6;
-	private static double d[] = null; // Network nodes. The "clusters"
 
-	// Weight matrix.
-	private static double w[][] = null;
+	// Network nodes (the "clusters") and their weights.
+	private static LVQ_Network network = null;
 
 	// Training patterns.
 	private static int mPattern[][] = null;
@@ -74,13 +75,11 @@ public class LVQ_Example1
 		mPattern[19] = J3;
 		mPattern[20] = K3;
 
-		d = new double[NUMBER_OF_CLUSTERS]; // Network nodes.
-
 		mTarget = new int[]
 		{ 0, 1, 2, 3, 4, 5, 6, 0, 1, 2, 3, 4, 5, 6, 0, 1, 2, 3, 4, 5, 6 };
 
 		// Weight matrix to be filled with values between 0.0 and 1.0
-		w = new double[NUMBER_OF_CLUSTERS][VEC_LEN];
+		network = new LVQ_Network(NUMBER_OF_CLUSTERS, VEC_LEN, alpha, DECAY_RATE, MIN_ALPHA);
 		return;
 	}
 
@@ -90,128 +89,39 @@ public class LVQ_Example1
 		// trainingPattern = the pattern which the output node will respond to.
 
 		// Initialize weights.
-		for (int i = 0; i < VEC_LEN; i++)
-		{
-			w[clusterNumber][i] = trainingPattern[i];
-		}
+		network.initializeWeights(clusterNumber, trainingPattern);
 
 	}
 
 	private static void training()
 	{
-		int dMin = 0;
-
-		while (alpha > MIN_ALPHA)
-		{
-			for (int VecNum = 0; VecNum < TRAINING_PATTERNS; VecNum++)
-			{
-				// Compute input for all nodes.
-				computeInput(mPattern, VecNum);
-
-				// See which is smaller?
-				dMin = minimum(d);
-
-				// Update the weights on the winning unit.
-				updateWeights(VecNum, dMin);
-
-			} // VecNum
-
-			// Reduce the learning rate.
-			alpha = DECAY_RATE * alpha;
-		}
+		// One pass over the patterns per learning rate, updating the weights on the winning unit, until alpha decays
+		// to MIN_ALPHA.
+		network.training(mPattern, mTarget);
 	}
 
 	public static int getCluster(int[] inputPattern)
 	{
-		// Compute input for all nodes.
-		computeInput(inputPattern);
-
-		// See which is smaller?
-		return minimum(d);
-	}
-
-	private static void updateWeights(int vectorNumber, int dMin)
-	{
-		for (int i = 0; i < VEC_LEN; i++)
-		{
-			// Update the winner.
-			if (dMin == mTarget[vectorNumber])
-			{
-				w[dMin][i] += (alpha * (mPattern[vectorNumber][i] - w[dMin][i]));
-			}
-			else
-			{
-				w[dMin][i] -= (alpha * (mPattern[vectorNumber][i] - w[dMin][i]));
-			}
-		}
-		return;
-	}
-
-	private static void computeInput(int[][] vectorArray, int vectorNumber)
-	{
-		// Overloaded function. See computeInput below.
-		clearArray(d);
-		for (int i = 0; i < NUMBER_OF_CLUSTERS; i++)
-		{
-			for (int j = 0; j < VEC_LEN; j++)
-			{
-				d[i] += Math.pow((w[i][j] - vectorArray[vectorNumber][j]), 2);
-			} // j
-		} // i
-		return;
+		// The node with the smallest distance to the pattern.
+		return network.getCluster(inputPattern);
 	}
 
-	private static void computeInput(int[] vectorArray)
+	/**
+	 * The glyph training patterns and their clusters, for the other classes of this package. Call initialize() first.
+	 */
+	static int[][] getPatterns()
 	{
-		// Overloaded function. See computeInput above.
-		clearArray(d);
-		for (int i = 0; i < NUMBER_OF_CLUSTERS; i++)
-		{
-			for (int j = 0; j < VEC_LEN; j++)
-			{
-				d[i] += Math.pow((w[i][j] - vectorArray[j]), 2);
-			} // j
-		} // i
-		return;
+		return mPattern;
 	}
 
-	private static void clearArray(double[] anArray)
+	static int[] getTargets()
 	{
-		for (int i = 0; i < NUMBER_OF_CLUSTERS; i++)
-		{
-			anArray[i] = 0.0;
-		}
-		return;
+		return mTarget;
 	}
 
-	private static int minimum(double[] nodeArray)
+	static String[] getFontNames()
 	{
-		int winner = 0;
-		boolean foundNewWinner = false;
-		boolean done = false;
-
-		while (!done)
-		{
-			foundNewWinner = false;
-			for (int i = 0; i < NUMBER_OF_CLUSTERS; i++)
-			{
-				if (i != winner)
-				{ // Avoid self-comparison.
-					if (nodeArray[i] < nodeArray[winner])
-					{
-						winner = i;
-						foundNewWinner = true;
-					}
-				}
-			}
-
-			if (foundNewWinner == false)
-			{
-				done = true;
-			}
-
-		}
-		return winner;
+		return mFontNames;
 	}
 
 	// If you look closely, you can see the letters made out of 1's
@@ -0,0 +1,1228 @@
+package com.mnemstudio.LVQ_LearningVectorQuantization;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Learning Vector Quantization.
+ *
+ * The network of LVQ_Example1 as an object, with a nearest-prototype search that skips most of the arithmetic;
+ * LVQ_Example1 trains and classifies through one.
+ *
+ * The full search sums the squared distance to every prototype over all vecLen components, then takes the smallest
+ * sum. Here the winner search gives up on a prototype as soon as its partial sum exceeds the best full sum found so
+ * far: the terms are never negative, so the rest of the sum can only grow. Prototypes can also be ruled out without
+ * touching their components at all: if the distance between the best prototype b found so far and a prototype k is
+ * more than twice the distance from the input x to b, the triangle inequality puts k further from x than b is. The
+ * distances between prototypes are computed once per epoch; as training moves the prototypes, each keeps a "drift",
+ * the length of all its moves since (alpha times the distance to the input, for either kind of update), and the stored
+ * distances are lowered by the drifts before they are used, so the test stays safe between recomputations.
+ *
+ * Training looks first at the prototype the pattern went to last time (at first, the lowest prototype of its class),
+ * which is usually the winner and so the best bound for the others. Neither shortcut changes the result: the sums that
+ * are finished are the same additions, in the same order, as in the full search, and ties go to the lowest prototype
+ * number. setPruning(false) switches to the full search, for comparison in LVQ_NetworkBenchmark.
+ *
+ * A class can have many prototypes: initializeWeights(prototype, pattern, classNumber) puts a prototype in a class
+ * (by default prototype k is in class k, as in LVQ_Example1), training counts a win as right when the winner's class
+ * is the pattern's, getCluster() gives the winning prototype and classify() its class. With thousands of prototypes the
+ * distances between all pairs become too many to keep, and setIndexed(true) replaces them with a vantage-point tree:
+ * each node splits the prototypes below it at the median distance from its own prototype, the vantage point, and the
+ * search skips a subtree when the distances stored at build time, the distance from the input to the vantage point and
+ * the triangle inequality show that none of its prototypes can beat the best found so far. The tree is rebuilt lazily,
+ * at the first search after an epoch or an initializeWeights(); within an epoch the stored distances are widened by
+ * the drifts, the vantage point's own and the largest in the subtree, so the search stays exact while the prototypes
+ * move.
+ *
+ */
+public class LVQ_Network
+{
+	// Relative slack on the triangle-inequality test, far above the rounding error of the distances, so that a
+	// prototype is only skipped when it is certainly further away than the best one.
+	private static final double PRUNING_MARGIN = 1e-9;
+
+	private final int clusters;
+	private final int vecLen;
+	private final double decayRate;
+	private final double minAlpha;
+	private double alpha;
+	private final double rate[]; // Learning rate of each prototype, for OLVQ1 and learn().
+	private double rateCeiling; // The most any of them can grow to.
+
+	private final double w[]; // Weight matrix, row i at [i * vecLen, (i + 1) * vecLen).
+	private final int classOf[]; // Class of each prototype.
+
+	// gap[i * clusters + k] = ||w_i - w_k|| when last computed; drift[i] bounds how far w_i has moved since.
+	private double gap[] = null;
+	private final double drift[];
+	// The distances between prototypes need computing: in gap[] for the table, in the tree for setIndexed(true). Each
+	// is cleared only by its own build, so that building one never passes the other off as up to date.
+	private boolean gapsStale = true;
+	private boolean treeStale = true;
+	private boolean pruning = true;
+
+	// Vantage-point tree, for setIndexed(true). The node at position p has the vantage point order[p], the inner
+	// subtree at [p + 1, mid[p]) and the outer one from mid[p] to the end of the node's range; the distances from the
+	// vantage point to the inner prototypes were in [innerMin[p], innerMax[p]] when it was built, and to the outer
+	// ones in [outerMin[p], outerMax[p]]. reach[p] is the largest drift in the subtree at p, position[k] the node of
+	// prototype k and parent[p] the node above p (-1 at the root).
+	private boolean indexed = false;
+	private int order[] = null;
+	private int mid[] = null;
+	private int position[] = null;
+	private int parent[] = null;
+	private double reach[] = null;
+	private double innerMin[] = null;
+	private double innerMax[] = null;
+	private double outerMin[] = null;
+	private double outerMax[] = null;
+	private double key[] = null;
+
+	private int searchWinner = -1;
+	private double searchBest = 0.0;
+
+	// Early stopping, and what the last training did.
+	public static final int STOP_SCHEDULE = 0; // Alpha reached minAlpha, or the epochs ran out.
+	public static final int STOP_NO_ERRORS = 1;
+	public static final int STOP_CONVERGED = 2; // No weight moved by epsilon.
+	public static final int STOP_NO_IMPROVEMENT = 3; // No better validation error count for "patience" epochs.
+	private boolean stopOnNoErrors = false;
+	private double epsilon = 0.0;
+	private int patience = 0;
+	private int validation[][] = null;
+	private int validationTargets[] = null;
+	private final ArrayList<Epoch> history = new ArrayList<Epoch>();
+	private int stopReason = STOP_SCHEDULE;
+
+	private MiniBatch miniBatch = null; // During trainingMiniBatch().
+
+	private double winnerDistance = 0.0; // Squared distance to the last winner found.
+	private long terms = 0; // Squared differences summed, for comparing the searches.
+
+	public LVQ_Network(int clusters, int vecLen, double alpha, double decayRate, double minAlpha)
+	{
+		this.clusters = clusters;
+		this.vecLen = vecLen;
+		this.alpha = alpha;
+		this.decayRate = decayRate;
+		this.minAlpha = minAlpha;
+
+		w = new double[clusters * vecLen];
+		classOf = new int[clusters];
+		drift = new double[clusters];
+		rate = new double[clusters];
+		for (int k = 0; k < clusters; k++)
+		{
+			classOf[k] = k;
+			rate[k] = alpha;
+		}
+		rateCeiling = alpha;
+		return;
+	}
+
+	public void initializeWeights(int clusterNumber, int trainingPattern[])
+	{
+		// clusterNumber = the output node (cluster) to assign the pattern to.
+		// trainingPattern = the pattern which the output node will respond to.
+		for (int i = 0; i < vecLen; i++)
+		{
+			w[clusterNumber * vecLen + i] = trainingPattern[i];
+		}
+		gapsStale = true;
+		treeStale = true;
+		return;
+	}
+
+	/**
+	 * Initializes the prototype to the pattern and puts it in the class.
+	 */
+	public void initializeWeights(int prototype, int trainingPattern[], int classNumber)
+	{
+		initializeWeights(prototype, trainingPattern);
+		classOf[prototype] = classNumber;
+		return;
+	}
+
+	/**
+	 * The training loop of LVQ_Example1: one pass over the patterns per learning rate, until alpha decays to minAlpha,
+	 * or until one of the criteria of setEarlyStopping() is met.
+	 */
+	public void training(int[][] patterns, int[] targets)
+	{
+		train(patterns, targets, false, Integer.MAX_VALUE);
+		return;
+	}
+
+	/**
+	 * OLVQ1 (Kohonen): every prototype has a learning rate of its own, which starts at alpha and changes each time the
+	 * prototype wins, to rate / (1 + rate) after a right answer and rate / (1 - rate) after a wrong one, never above
+	 * alpha. A prototype that keeps winning correctly settles fast, while one that still makes mistakes keeps moving,
+	 * so far fewer epochs are needed than with the one global decaying alpha of training(). As the rates can only climb
+	 * back to alpha, a smaller alpha than training() takes suits OLVQ1: 0.1 reaches 1.000 on the glyphs in three
+	 * epochs, where 0.3 and up leave one glyph on a wrong prototype. Runs "epochs" passes over the patterns, fewer if
+	 * setEarlyStopping() stops it, and returns, for each, the fraction of patterns whose winner was of the right class
+	 * when they were presented. Neither alpha nor the global decay is used or changed.
+	 */
+	public double[] trainingOLVQ1(int[][] patterns, int[] targets, int epochs)
+	{
+		setRates(alpha);
+		train(patterns, targets, true, epochs);
+
+		double accuracy[] = new double[history.size()];
+		for (int epoch = 0; epoch < accuracy.length; epoch++)
+		{
+			accuracy[epoch] = 1.0 - (double) history.get(epoch).getErrors() / (double) patterns.length;
+		}
+		return accuracy;
+	}
+
+	/**
+	 * One OLVQ1 step on one labelled pattern, for learning after training: the winner moves towards the pattern (or
+	 * away from it, if of another class) at its own rate, which then adapts as in trainingOLVQ1(). Returns the winner,
+	 * the only prototype that moved.
+	 */
+	public int learn(int[] pattern, int target)
+	{
+		int dMin = nearest(pattern, 0);
+		updateWeights(pattern, target, dMin, rate[dMin]);
+		adaptRate(dMin, classOf[dMin] == target);
+		return dMin;
+	}
+
+	/**
+	 * Sets the learning rate of every prototype, and the most it can grow to, for trainingOLVQ1() (which sets them to
+	 * alpha) and learn().
+	 */
+	public void setRates(double rate)
+	{
+		for (int k = 0; k < clusters; k++)
+		{
+			this.rate[k] = rate;
+		}
+		rateCeiling = rate;
+		return;
+	}
+
+	private void adaptRate(int prototype, boolean correct)
+	{
+		double r = rate[prototype];
+		rate[prototype] = correct ? r / (1.0 + r) : Math.min(rateCeiling, r / (1.0 - r));
+		return;
+	}
+
+	private void train(int[][] patterns, int[] targets, boolean adaptive, int epochs)
+	{
+		int hint[] = firstPrototypes(targets);
+		double previous[] = new double[w.length];
+		int bestValidation = Integer.MAX_VALUE;
+		int sinceBest = 0;
+
+		history.clear();
+		stopReason = STOP_SCHEDULE;
+		while (history.size() < epochs && (adaptive || alpha > minAlpha))
+		{
+			long start = System.nanoTime();
+			System.arraycopy(w, 0, previous, 0, w.length);
+			double epochAlpha = alpha;
+
+			gapsStale = true; // Once per epoch.
+			treeStale = true;
+			int errors = 0;
+			if (miniBatch != null)
+			{
+				errors = miniBatch.epoch(hint);
+			}
+			for (int vecNum = 0; miniBatch == null && vecNum < patterns.length; vecNum++)
+			{
+				int dMin = nearest(patterns[vecNum], hint[vecNum]);
+				hint[vecNum] = dMin;
+
+				// Update the weights on the winning unit.
+				updateWeights(patterns[vecNum], targets[vecNum], dMin, adaptive ? rate[dMin] : alpha);
+
+				boolean correct = classOf[dMin] == targets[vecNum];
+				if (!correct)
+				{
+					errors += 1;
+				}
+				if (adaptive)
+				{
+					adaptRate(dMin, correct);
+				}
+			} // vecNum
+
+			if (!adaptive)
+			{
+				// Reduce the learning rate.
+				alpha = decayRate * alpha;
+			}
+
+			double delta = 0.0;
+			for (int i = 0; i < w.length; i++)
+			{
+				delta = Math.max(delta, Math.abs(w[i] - previous[i]));
+			}
+			long elapsed = System.nanoTime() - start;
+
+			int validationErrors = -1;
+			if (validation != null)
+			{
+				validationErrors = 0;
+				for (int i = 0; i < validation.length; i++)
+				{
+					if (classify(validation[i]) != validationTargets[i])
+					{
+						validationErrors += 1;
+					}
+				}
+			}
+			history.add(new Epoch(history.size() + 1, elapsed, epochAlpha, errors, delta, validationErrors));
+
+			if (stopOnNoErrors && errors == 0)
+			{
+				stopReason = STOP_NO_ERRORS;
+				break;
+			}
+			if (delta < epsilon)
+			{
+				stopReason = STOP_CONVERGED;
+				break;
+			}
+			if (validation != null && patience > 0)
+			{
+				if (validationErrors < bestValidation)
+				{
+					bestValidation = validationErrors;
+					sinceBest = 0;
+				}
+				else if (++sinceBest >= patience)
+				{
+					stopReason = STOP_NO_IMPROVEMENT;
+					break;
+				}
+			}
+		}
+		gapsStale = true;
+		treeStale = true;
+		return;
+	}
+
+	/**
+	 * The schedule of training(), with the patterns shuffled at the start of each epoch and cut into mini-batches of
+	 * batchSize. All patterns of a batch look for their winners against the same weights, on the pool, split into one
+	 * slice per thread; each slice adds its patterns into a buffer of its own, and the weights are updated once at the
+	 * end of the batch. The LVQ step of one pattern x on its winner w is +alpha * (x - w), or -alpha * (x - w) if the
+	 * winner is of another class, and a prototype that won n patterns of the batch takes the mean of their steps,
+	 * alpha * (S - c * w) / n, where S is the sum of those patterns with a sign each and c the sum of the signs (the
+	 * plain sum of the steps would overshoot as soon as alpha * n passes 2). Patterns are ints, so the buffers hold S,
+	 * c and n exactly as ints, and adding up the slices gives the same sums in any order: with the same seed the
+	 * weights come out the same, bit for bit, whatever the number of threads or slices. A batch size of 1 is the
+	 * online rule on the shuffled order. The epoch records and setEarlyStopping() work as for training().
+	 */
+	public void trainingMiniBatch(int[][] patterns, int[] targets, int batchSize, long seed, ForkJoinPool pool)
+	{
+		miniBatch = new MiniBatch(patterns, targets, batchSize, seed, pool);
+		try
+		{
+			train(patterns, targets, false, Integer.MAX_VALUE);
+		}
+		finally
+		{
+			miniBatch = null;
+		}
+		return;
+	}
+
+	private class MiniBatch
+	{
+		private final int patterns[][];
+		private final int targets[];
+		private final int batchSize;
+		private final Random random;
+		private final ForkJoinPool pool;
+		private final int order[];
+		private final Slice slices[];
+
+		MiniBatch(int[][] patterns, int[] targets, int batchSize, long seed, ForkJoinPool pool)
+		{
+			this.patterns = patterns;
+			this.targets = targets;
+			this.batchSize = Math.max(1, batchSize);
+			this.random = new Random(seed);
+			this.pool = pool;
+			order = new int[patterns.length];
+			for (int i = 0; i < order.length; i++)
+			{
+				order[i] = i;
+			}
+			slices = new Slice[pool.getParallelism()];
+			for (int t = 0; t < slices.length; t++)
+			{
+				slices[t] = new Slice();
+			}
+		}
+
+		/**
+		 * One pass over the patterns, in a new random order; returns the number of wrong winners.
+		 */
+		int epoch(int[] hint)
+		{
+			for (int i = order.length - 1; i > 0; i--)
+			{
+				int j = random.nextInt(i + 1);
+				int swap = order[i];
+				order[i] = order[j];
+				order[j] = swap;
+			}
+
+			int errors = 0;
+			for (int start = 0; start < order.length; start += batchSize)
+			{
+				int end = Math.min(order.length, start + batchSize);
+				if (pruning && !indexed && gapsStale)
+				{
+					computeGaps();
+				}
+
+				// Winners and sums in parallel, one slice of the batch per buffer.
+				int count = Math.min(slices.length, end - start);
+				for (int t = 0; t < count; t++)
+				{
+					slices[t].setRange(hint, start + (int) ((long) (end - start) * t / count), start + (int) ((long) (end - start) * (t + 1) / count));
+				}
+				final int running = count;
+				pool.invoke(new RecursiveAction()
+				{
+					private static final long serialVersionUID = 1L;
+
+					@Override
+					protected void compute()
+					{
+						invokeAll(Arrays.asList(slices).subList(0, running));
+						return;
+					}
+				});
+
+				// One update per prototype won in the batch.
+				for (int k = 0; k < clusters; k++)
+				{
+					int sign = 0;
+					int won = 0;
+					for (int t = 0; t < count; t++)
+					{
+						won += slices[t].won[k];
+						sign += slices[t].sign[k];
+					}
+					if (won == 0)
+					{
+						continue;
+					}
+
+					int base = k * vecLen;
+					double moved = 0.0;
+					for (int j = 0; j < vecLen; j++)
+					{
+						int sum = 0;
+						for (int t = 0; t < count; t++)
+						{
+							sum += slices[t].sum[base + j];
+							slices[t].sum[base + j] = 0;
+						}
+						double step = alpha * (sum - sign * w[base + j]) / won;
+						w[base + j] += step;
+						moved += step * step;
+					} // j
+					drift[k] += Math.sqrt(moved);
+					widenReach(k);
+					for (int t = 0; t < count; t++)
+					{
+						slices[t].won[k] = 0;
+						slices[t].sign[k] = 0;
+					}
+				} // k
+
+				for (int t = 0; t < count; t++)
+				{
+					errors += slices[t].errors;
+				}
+			}
+			return errors;
+		}
+
+		/**
+		 * A range of the shuffled order, with its own buffer.
+		 */
+		private class Slice extends RecursiveAction
+		{
+			private static final long serialVersionUID = 1L;
+
+			private final int sum[] = new int[clusters * vecLen]; // S of each prototype, row by row.
+			private final int sign[] = new int[clusters]; // c of each prototype.
+			private final int won[] = new int[clusters]; // n of each prototype.
+			private int hint[];
+			private int from;
+			private int to;
+			private int errors;
+
+			void setRange(int[] hint, int from, int to)
+			{
+				reinitialize();
+				this.hint = hint;
+				this.from = from;
+				this.to = to;
+				errors = 0;
+				return;
+			}
+
+			@Override
+			protected void compute()
+			{
+				for (int i = from; i < to; i++)
+				{
+					int vecNum = order[i];
+					int pattern[] = patterns[vecNum];
+					int dMin = nearestShared(pattern, hint[vecNum]);
+					hint[vecNum] = dMin;
+
+					int s = 1;
+					if (classOf[dMin] != targets[vecNum])
+					{
+						s = -1;
+						errors += 1;
+					}
+					int base = dMin * vecLen;
+					for (int j = 0; j < vecLen; j++)
+					{
+						sum[base + j] += s * pattern[j];
+					}
+					sign[dMin] += s;
+					won[dMin] += 1;
+				}
+				return;
+			}
+		}
+	}
+
+	/**
+	 * The search of nearest() without indexing, for many threads at once: it only reads the weights, the table of
+	 * distances and the drifts, and keeps everything else in local variables. With setIndexed(true) there is no table,
+	 * and only the partial sums are cut short.
+	 */
+	private int nearestShared(int[] pattern, int first)
+	{
+		int winner = -1;
+		double best = Double.POSITIVE_INFINITY;
+		double bound = Double.POSITIVE_INFINITY;
+		for (int step = 0; step < clusters; step++)
+		{
+			int k = step == 0 ? first : (step <= first ? step - 1 : step);
+			if (pruning && !indexed && winner >= 0 && gap[winner * clusters + k] - drift[winner] - drift[k] > bound)
+			{
+				continue;
+			}
+
+			int base = k * vecLen;
+			double sum = 0.0;
+			int j = 0;
+			while (j < vecLen && (!pruning || sum <= best))
+			{
+				int end = Math.min(vecLen, j + 16);
+				for (; j < end; j++)
+				{
+					double difference = w[base + j] - pattern[j];
+					sum += difference * difference;
+				}
+			}
+			if (sum < best || (sum == best && k < winner))
+			{
+				best = sum;
+				winner = k;
+				bound = 2.0 * Math.sqrt(best) * (1.0 + PRUNING_MARGIN);
+			}
+		} // step
+		return winner;
+	}
+
+	/**
+	 * Lets training() and trainingOLVQ1() stop before their schedule ends: after an epoch in which every pattern won
+	 * on a prototype of its own class (if stopOnNoErrors), after an epoch in which no weight moved by epsilon or more,
+	 * or after "patience" epochs in a row that did not lower the error count on the validation set of setValidation()
+	 * (0 to ignore it). The weights are those of the last epoch run. setEarlyStopping(false, 0.0, 0), the default,
+	 * keeps the schedule of LVQ_Example1.
+	 */
+	public void setEarlyStopping(boolean stopOnNoErrors, double epsilon, int patience)
+	{
+		this.stopOnNoErrors = stopOnNoErrors;
+		this.epsilon = epsilon;
+		this.patience = patience;
+		return;
+	}
+
+	/**
+	 * Patterns to count errors on after every epoch, or null for none.
+	 */
+	public void setValidation(int[][] patterns, int[] targets)
+	{
+		validation = patterns;
+		validationTargets = targets;
+		return;
+	}
+
+	/**
+	 * One record per epoch of the last training() or trainingOLVQ1().
+	 */
+	public List<Epoch> getHistory()
+	{
+		return Collections.unmodifiableList(history);
+	}
+
+	/**
+	 * Why the last training() or trainingOLVQ1() ended: one of the STOP_ constants.
+	 */
+	public int getStopReason()
+	{
+		return stopReason;
+	}
+
+	/**
+	 * What one epoch did.
+	 */
+	public static final class Epoch
+	{
+		private final int number;
+		private final long nanos;
+		private final double alpha;
+		private final int errors;
+		private final double delta;
+		private final int validationErrors;
+
+		Epoch(int number, long nanos, double alpha, int errors, double delta, int validationErrors)
+		{
+			this.number = number;
+			this.nanos = nanos;
+			this.alpha = alpha;
+			this.errors = errors;
+			this.delta = delta;
+			this.validationErrors = validationErrors;
+			return;
+		}
+
+		/**
+		 * 1 for the first epoch.
+		 */
+		public int getNumber()
+		{
+			return number;
+		}
+
+		/**
+		 * Time taken by the pass over the patterns, not counting the validation.
+		 */
+		public long getNanos()
+		{
+			return nanos;
+		}
+
+		/**
+		 * The global learning rate during the epoch (the ceiling of the rates, for OLVQ1).
+		 */
+		public double getAlpha()
+		{
+			return alpha;
+		}
+
+		/**
+		 * Patterns whose winner was of another class when they were presented.
+		 */
+		public int getErrors()
+		{
+			return errors;
+		}
+
+		/**
+		 * The largest change of any weight over the epoch.
+		 */
+		public double getDelta()
+		{
+			return delta;
+		}
+
+		/**
+		 * Errors on the validation set after the epoch, or -1 without one.
+		 */
+		public int getValidationErrors()
+		{
+			return validationErrors;
+		}
+
+		@Override
+		public String toString()
+		{
+			return String.format("epoch %d: %.3f ms, alpha %.4f, %d errors, delta %.3g, %d validation errors", number, nanos / 1e6, alpha, errors, delta,
+					validationErrors);
+		}
+	}
+
+	/**
+	 * The lowest prototype of each pattern's class, or prototype 0 for a class without one.
+	 */
+	private int[] firstPrototypes(int[] targets)
+	{
+		int classes = 0;
+		for (int k = 0; k < clusters; k++)
+		{
+			classes = Math.max(classes, classOf[k] + 1);
+		}
+		int first[] = new int[classes];
+		Arrays.fill(first, -1);
+		for (int k = clusters - 1; k >= 0; k--)
+		{
+			if (classOf[k] >= 0)
+			{
+				first[classOf[k]] = k;
+			}
+		}
+
+		int hint[] = new int[targets.length];
+		for (int vecNum = 0; vecNum < targets.length; vecNum++)
+		{
+			int target = targets[vecNum];
+			hint[vecNum] = target >= 0 && target < classes && first[target] >= 0 ? first[target] : 0;
+		}
+		return hint;
+	}
+
+	/**
+	 * The winning prototype for the pattern.
+	 */
+	public int getCluster(int[] inputPattern)
+	{
+		return nearest(inputPattern, 0);
+	}
+
+	/**
+	 * The class of the winning prototype for the pattern.
+	 */
+	public int classify(int[] inputPattern)
+	{
+		return classOf[nearest(inputPattern, 0)];
+	}
+
+	private void updateWeights(int[] pattern, int target, int dMin, double alpha)
+	{
+		int base = dMin * vecLen;
+		for (int i = 0; i < vecLen; i++)
+		{
+			// Update the winner.
+			if (classOf[dMin] == target)
+			{
+				w[base + i] += (alpha * (pattern[i] - w[base + i]));
+			}
+			else
+			{
+				w[base + i] -= (alpha * (pattern[i] - w[base + i]));
+			}
+		}
+		// Either way the winner moves alpha * ||x - w||.
+		drift[dMin] += alpha * Math.sqrt(winnerDistance);
+		widenReach(dMin);
+		return;
+	}
+
+	/**
+	 * Raises the reach of the tree nodes above prototype k to its drift, if the tree is in use.
+	 */
+	private void widenReach(int k)
+	{
+		if (indexed && !treeStale)
+		{
+			for (int p = position[k]; p >= 0 && reach[p] < drift[k]; p = parent[p])
+			{
+				reach[p] = drift[k];
+			}
+		}
+		return;
+	}
+
+	/**
+	 * The prototype with the smallest squared distance to the pattern, the lowest number on ties. The "first" prototype
+	 * is measured before the others.
+	 */
+	private int nearest(int[] pattern, int first)
+	{
+		if (indexed)
+		{
+			return nearestIndexed(pattern, first);
+		}
+		if (pruning && gapsStale)
+		{
+			computeGaps();
+		}
+
+		int winner = -1;
+		double best = Double.POSITIVE_INFINITY;
+		double bound = Double.POSITIVE_INFINITY; // Prototypes further than this from the winner cannot win.
+		for (int step = 0; step < clusters; step++)
+		{
+			int k = step == 0 ? first : (step <= first ? step - 1 : step);
+
+			if (pruning && winner >= 0 && gap[winner * clusters + k] - drift[winner] - drift[k] > bound)
+			{
+				continue;
+			}
+
+			double sum = distance(pattern, k, pruning ? best : Double.POSITIVE_INFINITY);
+			if (sum < best || (sum == best && k < winner))
+			{
+				best = sum;
+				winner = k;
+				bound = 2.0 * Math.sqrt(best) * (1.0 + PRUNING_MARGIN);
+			}
+		} // step
+		winnerDistance = best;
+		return winner;
+	}
+
+	/**
+	 * Squared distance from the pattern to prototype k, summed in component order; once the partial sum exceeds limit, the
+	 * partial sum is returned instead.
+	 */
+	private double distance(int[] pattern, int k, double limit)
+	{
+		int base = k * vecLen;
+		double sum = 0.0;
+		int j = 0;
+		while (j < vecLen)
+		{
+			// Check the limit every 16 components.
+			int end = Math.min(vecLen, j + 16);
+			for (; j < end; j++)
+			{
+				double difference = w[base + j] - pattern[j];
+				sum += difference * difference;
+			}
+			if (sum > limit)
+			{
+				break;
+			}
+		}
+		terms += j;
+		return sum;
+	}
+
+	private void computeGaps()
+	{
+		if (gap == null)
+		{
+			gap = new double[clusters * clusters];
+		}
+		for (int i = 0; i < clusters; i++)
+		{
+			gap[i * clusters + i] = 0.0;
+			for (int k = i + 1; k < clusters; k++)
+			{
+				double sum = 0.0;
+				for (int j = 0; j < vecLen; j++)
+				{
+					double difference = w[i * vecLen + j] - w[k * vecLen + j];
+					sum += difference * difference;
+				}
+				terms += vecLen;
+				gap[i * clusters + k] = Math.sqrt(sum);
+				gap[k * clusters + i] = gap[i * clusters + k];
+			} // k
+			drift[i] = 0.0;
+		} // i
+		gapsStale = false;
+		return;
+	}
+
+	private int nearestIndexed(int[] pattern, int first)
+	{
+		if (treeStale)
+		{
+			buildTree();
+		}
+		searchWinner = first;
+		searchBest = distance(pattern, first, Double.POSITIVE_INFINITY);
+		search(pattern, 0, clusters);
+		winnerDistance = searchBest;
+		return searchWinner;
+	}
+
+	/**
+	 * Searches the node at position lo, which covers order[lo .. hi - 1].
+	 */
+	private void search(int[] pattern, int lo, int hi)
+	{
+		int vantage = order[lo];
+		if (hi - lo == 1)
+		{
+			// A leaf: its distance bounds nothing else, so it can be abandoned early.
+			consider(vantage, distance(pattern, vantage, searchBest));
+			return;
+		}
+		int m = mid[lo];
+		double innerSlack = drift[vantage] + (m > lo + 1 ? reach[lo + 1] : 0.0);
+		double outerSlack = drift[vantage] + (m < hi ? reach[m] : 0.0);
+
+		// Beyond this distance the vantage point is too far for it or anything below it to win.
+		double far = Math.sqrt(searchBest) * (1.0 + PRUNING_MARGIN) + Math.max(innerMax[lo] + innerSlack, outerMax[lo] + outerSlack);
+		double sum = distance(pattern, vantage, far * far);
+		consider(vantage, sum);
+		if (sum > far * far)
+		{
+			return;
+		}
+
+		// Lower bounds on the distance from the pattern to any prototype of each subtree.
+		double toVantage = Math.sqrt(sum);
+		double innerBound = Math.max(innerMin[lo] - toVantage, toVantage - innerMax[lo]) - innerSlack;
+		double outerBound = Math.max(outerMin[lo] - toVantage, toVantage - outerMax[lo]) - outerSlack;
+
+		// The more promising subtree first, so that the other is more likely to be skipped.
+		if (innerBound <= outerBound)
+		{
+			visit(pattern, lo + 1, m, innerBound);
+			visit(pattern, m, hi, outerBound);
+		}
+		else
+		{
+			visit(pattern, m, hi, outerBound);
+			visit(pattern, lo + 1, m, innerBound);
+		}
+		return;
+	}
+
+	private void visit(int[] pattern, int lo, int hi, double bound)
+	{
+		if (lo < hi && bound <= Math.sqrt(searchBest) * (1.0 + PRUNING_MARGIN))
+		{
+			search(pattern, lo, hi);
+		}
+		return;
+	}
+
+	private void consider(int k, double sum)
+	{
+		if (sum < searchBest || (sum == searchBest && k < searchWinner))
+		{
+			searchBest = sum;
+			searchWinner = k;
+		}
+		return;
+	}
+
+	private void buildTree()
+	{
+		if (order == null)
+		{
+			order = new int[clusters];
+			mid = new int[clusters];
+			innerMin = new double[clusters];
+			innerMax = new double[clusters];
+			outerMin = new double[clusters];
+			outerMax = new double[clusters];
+			key = new double[clusters];
+			position = new int[clusters];
+			parent = new int[clusters];
+			reach = new double[clusters];
+		}
+		for (int k = 0; k < clusters; k++)
+		{
+			order[k] = k;
+			drift[k] = 0.0;
+			reach[k] = 0.0;
+		}
+		build(0, clusters, -1);
+		for (int p = 0; p < clusters; p++)
+		{
+			position[order[p]] = p;
+		}
+		treeStale = false;
+		return;
+	}
+
+	private void build(int lo, int hi, int up)
+	{
+		parent[lo] = up;
+		if (hi - lo <= 1)
+		{
+			mid[lo] = hi;
+			return;
+		}
+
+		int vantage = order[lo];
+		for (int p = lo + 1; p < hi; p++)
+		{
+			double sum = 0.0;
+			for (int j = 0; j < vecLen; j++)
+			{
+				double difference = w[vantage * vecLen + j] - w[order[p] * vecLen + j];
+				sum += difference * difference;
+			}
+			terms += vecLen;
+			key[p] = Math.sqrt(sum);
+		}
+
+		// The nearer half is the inner subtree.
+		int m = lo + 1 + (hi - lo - 1) / 2;
+		select(lo + 1, hi - 1, m);
+		innerMin[lo] = Double.POSITIVE_INFINITY;
+		innerMax[lo] = Double.NEGATIVE_INFINITY;
+		outerMin[lo] = Double.POSITIVE_INFINITY;
+		outerMax[lo] = Double.NEGATIVE_INFINITY;
+		for (int p = lo + 1; p < hi; p++)
+		{
+			if (p < m)
+			{
+				innerMin[lo] = Math.min(innerMin[lo], key[p]);
+				innerMax[lo] = Math.max(innerMax[lo], key[p]);
+			}
+			else
+			{
+				outerMin[lo] = Math.min(outerMin[lo], key[p]);
+				outerMax[lo] = Math.max(outerMax[lo], key[p]);
+			}
+		}
+		mid[lo] = m;
+
+		if (m > lo + 1)
+		{
+			build(lo + 1, m, lo);
+		}
+		build(m, hi, lo);
+		return;
+	}
+
+	/**
+	 * Reorders order[left .. right] and key[left .. right] together, so that position kth holds the element that
+	 * sorting by key would put there, with no larger key before it and no smaller one after it.
+	 */
+	private void select(int left, int right, int kth)
+	{
+		while (left < right)
+		{
+			double pivot = key[(left + right) >>> 1];
+			int i = left;
+			int j = right;
+			while (i <= j)
+			{
+				while (key[i] < pivot)
+				{
+					i++;
+				}
+				while (key[j] > pivot)
+				{
+					j--;
+				}
+				if (i <= j)
+				{
+					double swapKey = key[i];
+					key[i] = key[j];
+					key[j] = swapKey;
+					int swapOrder = order[i];
+					order[i] = order[j];
+					order[j] = swapOrder;
+					i++;
+					j--;
+				}
+			}
+			if (kth <= j)
+			{
+				right = j;
+			}
+			else if (kth >= i)
+			{
+				left = i;
+			}
+			else
+			{
+				return;
+			}
+		}
+		return;
+	}
+
+	/**
+	 * Searches a vantage-point tree over the prototypes instead of the table of distances between all of them; see
+	 * the class comment.
+	 */
+	public void setIndexed(boolean indexed)
+	{
+		this.indexed = indexed;
+		gapsStale = true;
+		treeStale = true;
+		return;
+	}
+
+	public void setPruning(boolean pruning)
+	{
+		this.pruning = pruning;
+		gapsStale = true;
+		treeStale = true;
+		return;
+	}
+
+	/**
+	 * Squared differences summed so far, by the searches and the distances between prototypes.
+	 */
+	public long getTerms()
+	{
+		return terms;
+	}
+
+	public double getAlpha()
+	{
+		return alpha;
+	}
+
+	/**
+	 * The prototype's own learning rate, for trainingOLVQ1() and learn().
+	 */
+	public double getRate(int cluster)
+	{
+		return rate[cluster];
+	}
+
+	public int getClusters()
+	{
+		return clusters;
+	}
+
+	public int getVecLen()
+	{
+		return vecLen;
+	}
+
+	public double getWeight(int cluster, int i)
+	{
+		return w[cluster * vecLen + i];
+	}
+
+	public int getClassOf(int prototype)
+	{
+		return classOf[prototype];
+	}
+
+	public static void main(String[] args)
+	{
+		// The glyphs of LVQ_Example1, with the same constants.
+		LVQ_Example1.initialize();
+		int pattern[][] = LVQ_Example1.getPatterns();
+		int target[] = LVQ_Example1.getTargets();
+		String fontNames[] = LVQ_Example1.getFontNames();
+
+		LVQ_Network lvq = new LVQ_Network(7, 63, 0.6, 0.96, 0.01);
+		for (int i = 0; i < lvq.getClusters(); i++)
+		{
+			lvq.initializeWeights(i, pattern[i]);
+			System.out.println("Weights for cluster " + i + " initialized to pattern " + fontNames[i]);
+		}
+
+		lvq.training(pattern, target);
+
+		// Display results
+		for (int i = 0; i < pattern.length; i++)
+		{
+			System.out.println("Pattern " + fontNames[i] + " belongs to cluster " + lvq.getCluster(pattern[i]));
+		}
+
+		// OLVQ1 on the same glyphs, with a budget of 10 epochs.
+		LVQ_Network olvq = new LVQ_Network(7, 63, 0.1, 0.96, 0.01);
+		for (int i = 0; i < olvq.getClusters(); i++)
+		{
+			olvq.initializeWeights(i, pattern[i]);
+		}
+		double accuracy[] = olvq.trainingOLVQ1(pattern, target, 10);
+		for (int epoch = 0; epoch < accuracy.length; epoch++)
+		{
+			System.out.println(String.format("OLVQ1 epoch %d: accuracy %.3f", epoch + 1, accuracy[epoch]));
+		}
+		System.out.println(String.format("Glyphs: LVQ_Example1 loop %.3f after %d epochs, OLVQ1 %.3f after %d epochs", accuracy(lvq, pattern, target),
+				epochs(0.6, 0.96, 0.01), accuracy(olvq, pattern, target), accuracy.length));
+
+		// The LVQ_Example1 loop again, stopping once the weights move by less than 0.001 in an epoch.
+		LVQ_Network early = new LVQ_Network(7, 63, 0.6, 0.96, 0.01);
+		for (int i = 0; i < early.getClusters(); i++)
+		{
+			early.initializeWeights(i, pattern[i]);
+		}
+		early.setEarlyStopping(false, 0.001, 0);
+		early.training(pattern, target);
+		List<Epoch> history = early.getHistory();
+		System.out.println(history.get(0));
+		System.out.println(history.get(history.size() - 1));
+		System.out.println(String.format("Glyphs: LVQ_Example1 loop with early stopping %.3f after %d epochs", accuracy(early, pattern, target), history.size()));
+
+		// A harder set: 20 classes of noisy 512-component patterns, half of them held out.
+		int clusters = 20;
+		int all[] = new int[clusters * 20];
+		int noisy[][] = LVQ_NetworkBenchmark.makePatterns(clusters, 20, 512, 0.3, 3L, all);
+		int train[][] = Arrays.copyOf(noisy, clusters * 10);
+		int test[][] = Arrays.copyOfRange(noisy, clusters * 10, noisy.length);
+		int trainTarget[] = Arrays.copyOf(all, clusters * 10);
+		int testTarget[] = Arrays.copyOfRange(all, clusters * 10, all.length);
+
+		lvq = new LVQ_Network(clusters, 512, 0.6, 0.96, 0.01);
+		olvq = new LVQ_Network(clusters, 512, 0.1, 0.96, 0.01);
+		for (int c = 0; c < clusters; c++)
+		{
+			lvq.initializeWeights(c, train[c]);
+			olvq.initializeWeights(c, train[c]);
+		}
+		long start = System.nanoTime();
+		lvq.training(train, trainTarget);
+		long lvqTime = System.nanoTime() - start;
+		start = System.nanoTime();
+		accuracy = olvq.trainingOLVQ1(train, trainTarget, 10);
+		long olvqTime = System.nanoTime() - start;
+		System.out.println(String.format("Noisy set, held-out accuracy: LVQ_Example1 loop %.3f in %d epochs, %.1f ms; OLVQ1 %.3f in %d epochs, %.1f ms",
+				accuracy(lvq, test, testTarget), epochs(0.6, 0.96, 0.01), lvqTime / 1e6, accuracy(olvq, test, testTarget), accuracy.length, olvqTime / 1e6));
+
+		// OLVQ1 with a budget of 100 epochs, stopped when the held-out errors have not improved for 3 epochs.
+		olvq = new LVQ_Network(clusters, 512, 0.1, 0.96, 0.01);
+		for (int c = 0; c < clusters; c++)
+		{
+			olvq.initializeWeights(c, train[c]);
+		}
+		olvq.setEarlyStopping(true, 1e-6, 3);
+		olvq.setValidation(test, testTarget);
+		olvq.trainingOLVQ1(train, trainTarget, 100);
+		for (Epoch epoch : olvq.getHistory())
+		{
+			System.out.println(epoch);
+		}
+		System.out.println("Stop reason: " + olvq.getStopReason());
+		return;
+	}
+
+	private static double accuracy(LVQ_Network lvq, int[][] patterns, int[] targets)
+	{
+		int correct = 0;
+		for (int i = 0; i < patterns.length; i++)
+		{
+			if (lvq.getCluster(patterns[i]) == targets[i])
+			{
+				correct += 1;
+			}
+		}
+		return (double) correct / (double) patterns.length;
+	}
+
+	private static int epochs(double alpha, double decayRate, double minAlpha)
+	{
+		int epochs = 0;
+		for (double a = alpha; a > minAlpha; a *= decayRate)
+		{
+			epochs += 1;
+		}
+		return epochs;
+	}
+
+}
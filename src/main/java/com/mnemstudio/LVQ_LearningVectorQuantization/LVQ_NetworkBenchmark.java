@@ -0,0 +1,357 @@
+package com.mnemstudio.LVQ_LearningVectorQuantization;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Times the nearest-prototype search of LVQ_Network, pruned against the full search of setPruning(false), over a
+ * sweep of prototype counts and vector lengths.
+ *
+ * The training patterns are noisy copies of one random binary source pattern per class, and each class's prototype
+ * starts on one of its patterns, as in LVQ_Example1. Both searches must give the same winners, so the two networks
+ * must end up with the same weights.
+ *
+ * A second sweep gives each of CLASSES classes many prototypes, up to thousands in all, over patterns drawn around
+ * several source patterns per class, and times getCluster() with the full search, the table of distances between
+ * prototypes and the vantage-point tree of setIndexed(true). A third times trainingMiniBatch() on 1, 2, 4, ... threads
+ * against the online training(), and checks that every thread count gives the same weights, and that a network with
+ * setIndexed(true) and a validation set trains the same as one with the table. Usage:
+ *
+ * <pre>
+ * LVQ_NetworkBenchmark [patternsPerClass] [decayRate] [index | batch]
+ * </pre>
+ *
+ */
+public class LVQ_NetworkBenchmark
+{
+	private static final int CLUSTER_VALUES[] = new int[]
+	{ 20, 100, 300 };
+	private static final int VEC_LEN_VALUES[] = new int[]
+	{ 63, 512 };
+	private static final int PROTOTYPES_PER_CLASS_VALUES[] = new int[]
+	{ 10, 100, 400 };
+	private static final int CLASSES = 10;
+	private static final long SEED = 11L;
+
+	static int[][] makePatterns(int clusters, int perClass, int vecLen, double noise, long seed, int[] targets)
+	{
+		Random random = new Random(seed);
+		int source[][] = new int[clusters][vecLen];
+		for (int c = 0; c < clusters; c++)
+		{
+			for (int j = 0; j < vecLen; j++)
+			{
+				source[c][j] = random.nextDouble() < 0.3 ? 1 : 0;
+			}
+		} // c
+
+		// Class c is at c, c + clusters, c + 2 * clusters, ... like the fonts of LVQ_Example1.
+		int pattern[][] = new int[clusters * perClass][];
+		for (int i = 0; i < pattern.length; i++)
+		{
+			targets[i] = i % clusters;
+			pattern[i] = source[targets[i]].clone();
+			for (int j = 0; j < vecLen; j++)
+			{
+				if (random.nextDouble() < noise)
+				{
+					pattern[i][j] = 1 - pattern[i][j];
+				}
+			}
+		} // i
+		return pattern;
+	}
+
+	private static int[] vary(int[] source, double flips, Random random)
+	{
+		int pattern[] = source.clone();
+		for (int j = 0; j < pattern.length; j++)
+		{
+			if (random.nextDouble() < flips)
+			{
+				pattern[j] = 1 - pattern[j];
+			}
+		}
+		return pattern;
+	}
+
+	public static void main(String[] args)
+	{
+		if (args.length > 2 && args[2].equals("index"))
+		{
+			indexSweep(); // Only the second sweep.
+			return;
+		}
+		if (args.length > 2 && args[2].equals("batch"))
+		{
+			batchSweep(); // Only the third sweep.
+			return;
+		}
+		int perClass = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+		double decayRate = args.length > 1 ? Double.parseDouble(args[1]) : 0.8;
+
+		System.out.println("patterns per class = " + perClass + ", decay rate = " + decayRate + "\n");
+		System.out.println("clusters  VEC_LEN  full ms  pruned ms  terms/search (full)  terms/search (pruned)  mismatches");
+
+		for (int cIndex = 0; cIndex < CLUSTER_VALUES.length; cIndex++)
+		{
+			for (int lIndex = 0; lIndex < VEC_LEN_VALUES.length; lIndex++)
+			{
+				int clusters = CLUSTER_VALUES[cIndex];
+				int vecLen = VEC_LEN_VALUES[lIndex];
+				int target[] = new int[clusters * perClass];
+				int pattern[][] = makePatterns(clusters, perClass, vecLen, 0.15, SEED, target);
+
+				LVQ_Network full = new LVQ_Network(clusters, vecLen, 0.6, decayRate, 0.01);
+				full.setPruning(false);
+				LVQ_Network pruned = new LVQ_Network(clusters, vecLen, 0.6, decayRate, 0.01);
+				for (int c = 0; c < clusters; c++)
+				{
+					full.initializeWeights(c, pattern[c]);
+					pruned.initializeWeights(c, pattern[c]);
+				}
+
+				long start = System.nanoTime();
+				full.training(pattern, target);
+				int membership[] = new int[pattern.length];
+				for (int i = 0; i < pattern.length; i++)
+				{
+					membership[i] = full.getCluster(pattern[i]);
+				}
+				long fullTime = System.nanoTime() - start;
+
+				start = System.nanoTime();
+				pruned.training(pattern, target);
+				int mismatches = 0;
+				for (int i = 0; i < pattern.length; i++)
+				{
+					if (pruned.getCluster(pattern[i]) != membership[i])
+					{
+						mismatches += 1;
+					}
+				}
+				long prunedTime = System.nanoTime() - start;
+
+				// Same winners all along means the same updates, so the weights must be equal too.
+				for (int c = 0; c < clusters; c++)
+				{
+					for (int j = 0; j < vecLen; j++)
+					{
+						if (full.getWeight(c, j) != pruned.getWeight(c, j))
+						{
+							mismatches += 1;
+						}
+					}
+				} // c
+
+				int epochs = (int) Math.ceil(Math.log(0.01 / 0.6) / Math.log(decayRate));
+				double searches = (double) pattern.length * (epochs + 1);
+				System.out.println(String.format("%8d  %7d  %7d  %9d  %19.0f  %21.0f  %10d", clusters, vecLen, fullTime / 1000000, prunedTime / 1000000,
+						full.getTerms() / searches, pruned.getTerms() / searches, mismatches));
+			} // lIndex
+		} // cIndex
+
+		indexSweep();
+		batchSweep();
+		return;
+	}
+
+	private static void batchSweep()
+	{
+		int classes = 100;
+		int vecLen = 256;
+		int batchSize = 1000;
+		int cores = Runtime.getRuntime().availableProcessors();
+		int target[] = new int[classes * 200];
+		int pattern[][] = makePatterns(classes, 200, vecLen, 0.15, SEED, target);
+		System.out.println("\nclasses = " + classes + ", VEC_LEN = " + vecLen + ", patterns = " + pattern.length + ", batch = " + batchSize + ", cores = " + cores
+				+ ", alpha 0.3 decaying by 0.8\n");
+		System.out.println("mode               ms  epochs  accuracy  same weights as 1 thread");
+
+		LVQ_Network online = new LVQ_Network(classes, vecLen, 0.3, 0.8, 0.01);
+		for (int c = 0; c < classes; c++)
+		{
+			online.initializeWeights(c, pattern[c]);
+		}
+		long start = System.nanoTime();
+		online.training(pattern, target);
+		long elapsed = System.nanoTime() - start;
+		System.out.println(String.format("online     %10d  %6d  %8.3f", elapsed / 1000000, online.getHistory().size(), accuracy(online, pattern, target)));
+
+		double first[] = null;
+		for (int threads = 1; threads <= Math.max(4, cores); threads *= 2)
+		{
+			LVQ_Network batch = new LVQ_Network(classes, vecLen, 0.3, 0.8, 0.01);
+			for (int c = 0; c < classes; c++)
+			{
+				batch.initializeWeights(c, pattern[c]);
+			}
+			ForkJoinPool pool = new ForkJoinPool(threads);
+			start = System.nanoTime();
+			batch.trainingMiniBatch(pattern, target, batchSize, SEED, pool);
+			elapsed = System.nanoTime() - start;
+			pool.shutdown();
+
+			double weights[] = new double[classes * vecLen];
+			for (int c = 0; c < classes; c++)
+			{
+				for (int j = 0; j < vecLen; j++)
+				{
+					weights[c * vecLen + j] = batch.getWeight(c, j);
+				}
+			}
+			if (first == null)
+			{
+				first = weights;
+			}
+			System.out.println(String.format("%2d threads %10d  %6d  %8.3f  %s", threads, elapsed / 1000000, batch.getHistory().size(), accuracy(batch, pattern, target),
+					Arrays.equals(first, weights)));
+		} // threads
+
+		// With a validation set, the end of each epoch searches the tree of setIndexed(true) after the batches moved
+		// the prototypes; it must count the same errors and leave the same weights as the table does.
+		int validationTarget[] = new int[classes * 5];
+		int validation[][] = makePatterns(classes, 5, vecLen, 0.15, SEED + 1, validationTarget);
+		LVQ_Network table = new LVQ_Network(classes, vecLen, 0.3, 0.8, 0.01);
+		LVQ_Network tree = new LVQ_Network(classes, vecLen, 0.3, 0.8, 0.01);
+		tree.setIndexed(true);
+		for (int c = 0; c < classes; c++)
+		{
+			table.initializeWeights(c, pattern[c]);
+			tree.initializeWeights(c, pattern[c]);
+		}
+		table.setValidation(validation, validationTarget);
+		tree.setValidation(validation, validationTarget);
+		ForkJoinPool pool = new ForkJoinPool(2);
+		table.trainingMiniBatch(pattern, target, batchSize, SEED, pool);
+		tree.trainingMiniBatch(pattern, target, batchSize, SEED, pool);
+		pool.shutdown();
+		int mismatches = 0;
+		for (int c = 0; c < classes; c++)
+		{
+			for (int j = 0; j < vecLen; j++)
+			{
+				if (table.getWeight(c, j) != tree.getWeight(c, j))
+				{
+					mismatches += 1;
+				}
+			}
+		}
+		for (int e = 0; e < table.getHistory().size(); e++)
+		{
+			if (e >= tree.getHistory().size() || table.getHistory().get(e).getValidationErrors() != tree.getHistory().get(e).getValidationErrors())
+			{
+				mismatches += 1;
+			}
+		}
+		System.out.println("indexed with validation: " + mismatches + " mismatches against the table");
+		return;
+	}
+
+	private static double accuracy(LVQ_Network lvq, int[][] patterns, int[] targets)
+	{
+		int correct = 0;
+		for (int i = 0; i < patterns.length; i++)
+		{
+			if (lvq.classify(patterns[i]) == targets[i])
+			{
+				correct += 1;
+			}
+		}
+		return (double) correct / (double) patterns.length;
+	}
+
+	private static void indexSweep()
+	{
+		int vecLen = 256;
+		System.out.println("\nclasses = " + CLASSES + ", VEC_LEN = " + vecLen + ", OLVQ1 for 3 epochs\n");
+		System.out.println("prototypes  train ms (table)  train ms (tree)  full us/query  table us/query  tree us/query  mismatches");
+
+		for (int pIndex = 0; pIndex < PROTOTYPES_PER_CLASS_VALUES.length; pIndex++)
+		{
+			int prototypes = CLASSES * PROTOTYPES_PER_CLASS_VALUES[pIndex];
+
+			// Each class is a variation on one of a few themes and has many modes, which vary it a little more; the
+			// patterns are noisy copies of the modes, and the prototypes start on patterns of their own mode.
+			int modes = prototypes / 2;
+			Random random = new Random(SEED + pIndex);
+			int theme[][] = new int[4][];
+			int classSource[][] = new int[CLASSES][];
+			int modeSource[][] = new int[modes][];
+			for (int t = 0; t < theme.length; t++)
+			{
+				theme[t] = vary(new int[vecLen], 0.3, random);
+			}
+			for (int c = 0; c < CLASSES; c++)
+			{
+				classSource[c] = vary(theme[c % theme.length], 0.1, random);
+			}
+			for (int mode = 0; mode < modes; mode++)
+			{
+				modeSource[mode] = vary(classSource[mode % CLASSES], 0.05, random);
+			}
+			int pattern[][] = new int[modes * 8][];
+			int target[] = new int[pattern.length];
+			for (int i = 0; i < pattern.length; i++)
+			{
+				pattern[i] = vary(modeSource[i % modes], 0.02, random);
+				target[i] = (i % modes) % CLASSES;
+			}
+
+			LVQ_Network table = new LVQ_Network(prototypes, vecLen, 0.1, 0.96, 0.01);
+			LVQ_Network tree = new LVQ_Network(prototypes, vecLen, 0.1, 0.96, 0.01);
+			tree.setIndexed(true);
+			for (int k = 0; k < prototypes; k++)
+			{
+				// Patterns k and k + modes are both of mode k % modes.
+				table.initializeWeights(k, pattern[k], target[k]);
+				tree.initializeWeights(k, pattern[k], target[k]);
+			}
+
+			long start = System.nanoTime();
+			table.trainingOLVQ1(pattern, target, 3);
+			long tableTrain = System.nanoTime() - start;
+			start = System.nanoTime();
+			tree.trainingOLVQ1(pattern, target, 3);
+			long treeTrain = System.nanoTime() - start;
+
+			int membership[] = new int[pattern.length];
+			table.getCluster(pattern[0]); // Computes the table outside the timing.
+			start = System.nanoTime();
+			for (int i = 0; i < pattern.length; i++)
+			{
+				membership[i] = table.getCluster(pattern[i]);
+			}
+			long tableTime = System.nanoTime() - start;
+
+			int mismatches = 0;
+			tree.getCluster(pattern[0]); // Builds the tree outside the timing.
+			start = System.nanoTime();
+			for (int i = 0; i < pattern.length; i++)
+			{
+				if (tree.getCluster(pattern[i]) != membership[i])
+				{
+					mismatches += 1;
+				}
+			}
+			long treeTime = System.nanoTime() - start;
+
+			table.setPruning(false);
+			start = System.nanoTime();
+			for (int i = 0; i < pattern.length; i++)
+			{
+				if (table.getCluster(pattern[i]) != membership[i])
+				{
+					mismatches += 1;
+				}
+			}
+			long fullTime = System.nanoTime() - start;
+
+			System.out.println(String.format("%10d  %16d  %15d  %13.1f  %14.1f  %13.1f  %10d", prototypes, tableTrain / 1000000, treeTrain / 1000000,
+					fullTime / 1000.0 / pattern.length, tableTime / 1000.0 / pattern.length, treeTime / 1000.0 / pattern.length, mismatches));
+		} // pIndex
+		return;
+	}
+
+}
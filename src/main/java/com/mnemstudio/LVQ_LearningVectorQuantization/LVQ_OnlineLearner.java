@@ -0,0 +1,250 @@
+package com.mnemstudio.LVQ_LearningVectorQuantization;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Learning Vector Quantization.
+ *
+ * Keeps a trained LVQ_Network learning from newly labelled samples, one at a time or a few together, and hands the
+ * result to readers on other threads as soon as each update is done.
+ *
+ * A sample is one LVQ_Network.learn() step: only the winning prototype moves, at its own rate, which shrinks each time
+ * it is right and grows (up to the ceiling of setRates()) each time it is wrong, so a prototype that has settled is
+ * hardly disturbed by one more sample while a wrong one is corrected quickly. After the step, or after the last sample
+ * of a batch, the moved prototypes are copied into a new LVQ_Classifier version (see LVQ_Classifier.next()), which is
+ * published through a volatile field: a reader that gets it sees every row of it, always a whole update and never
+ * half of one, and no reader ever waits. Updates are serialized on this object.
+ *
+ * rebuild() publishes a classifier made afresh from the network, which recomputes the distances between prototypes
+ * its search prunes with; the more the prototypes have moved since, the less that pruning skips.
+ *
+ */
+public class LVQ_OnlineLearner
+{
+	private final LVQ_Network network;
+	private final int vecLen;
+	private volatile LVQ_Classifier published;
+
+	// Prototypes moved since the last publish.
+	private final boolean changed[];
+	private final int changedList[];
+	private int changedCount = 0;
+
+	public LVQ_OnlineLearner(LVQ_Network network)
+	{
+		this.network = network;
+		vecLen = network.getVecLen();
+		changed = new boolean[network.getClusters()];
+		changedList = new int[network.getClusters()];
+		published = new LVQ_Classifier(network);
+		return;
+	}
+
+	/**
+	 * Learns one labelled sample and publishes the result.
+	 */
+	public synchronized LVQ_Classifier learn(int[] pattern, int label)
+	{
+		mark(network.learn(pattern, label));
+		return publish();
+	}
+
+	/**
+	 * Learns the samples in order and publishes once, after the last.
+	 */
+	public synchronized LVQ_Classifier learn(int[][] patterns, int[] labels)
+	{
+		for (int i = 0; i < patterns.length; i++)
+		{
+			mark(network.learn(patterns[i], labels[i]));
+		}
+		return publish();
+	}
+
+	/**
+	 * Publishes a classifier made from the whole network, with fresh distances between prototypes.
+	 */
+	public synchronized LVQ_Classifier rebuild()
+	{
+		for (int c = 0; c < changedCount; c++)
+		{
+			changed[changedList[c]] = false;
+		}
+		changedCount = 0;
+		published = new LVQ_Classifier(network);
+		return published;
+	}
+
+	/**
+	 * The latest published classifier; any number of threads can use it at once.
+	 */
+	public LVQ_Classifier getClassifier()
+	{
+		return published;
+	}
+
+	private void mark(int prototype)
+	{
+		if (!changed[prototype])
+		{
+			changed[prototype] = true;
+			changedList[changedCount] = prototype;
+			changedCount += 1;
+		}
+		return;
+	}
+
+	private LVQ_Classifier publish()
+	{
+		double rows[][] = new double[changedCount][vecLen];
+		for (int c = 0; c < changedCount; c++)
+		{
+			for (int j = 0; j < vecLen; j++)
+			{
+				rows[c][j] = network.getWeight(changedList[c], j);
+			}
+			changed[changedList[c]] = false;
+		}
+		published = published.next(changedList, changedCount, rows);
+		changedCount = 0;
+		return published;
+	}
+
+	public static void main(String[] args) throws InterruptedException
+	{
+		int classes = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+		int vecLen = args.length > 1 ? Integer.parseInt(args[1]) : 63;
+		int corrections = args.length > 2 ? Integer.parseInt(args[2]) : 20000;
+		int readers = args.length > 3 ? Integer.parseInt(args[3]) : 2;
+
+		// Trained once, the nightly way.
+		int target[] = new int[classes * 10];
+		int pattern[][] = LVQ_NetworkBenchmark.makePatterns(classes, 10, vecLen, 0.1, 8L, target);
+		LVQ_Network network = new LVQ_Network(classes, vecLen, 0.1, 0.96, 0.01);
+		for (int c = 0; c < classes; c++)
+		{
+			network.initializeWeights(c, pattern[c]);
+		}
+		long start = System.nanoTime();
+		network.trainingOLVQ1(pattern, target, 10);
+		System.out.println("Full retrain of " + pattern.length + " patterns, 10 epochs: " + (System.nanoTime() - start) / 1000000 + " ms");
+		network.setRates(0.05);
+		final LVQ_OnlineLearner learner = new LVQ_OnlineLearner(network);
+
+		// Since then every class has drifted: a few of its components have flipped for good. Of the new samples, the
+		// first half are labelled and learned, the second half held out. Readers classify against the latest version
+		// all along.
+		final int fresh[] = new int[classes * 20];
+		final int query[][] = LVQ_NetworkBenchmark.makePatterns(classes, 20, vecLen, 0.1, 8L, fresh);
+		Random random = new Random(9L);
+		boolean flipped[][] = new boolean[classes][vecLen];
+		for (int c = 0; c < classes; c++)
+		{
+			for (int j = 0; j < vecLen; j++)
+			{
+				flipped[c][j] = random.nextDouble() < 0.15;
+			}
+		}
+		for (int i = 0; i < query.length; i++)
+		{
+			for (int j = 0; j < vecLen; j++)
+			{
+				if (flipped[fresh[i]][j])
+				{
+					query[i][j] = 1 - query[i][j];
+				}
+			}
+		} // i
+		int half = query.length / 2;
+		int heldOut[][] = Arrays.copyOfRange(query, half, query.length);
+		int heldOutTarget[] = Arrays.copyOfRange(fresh, half, fresh.length);
+		final AtomicBoolean running = new AtomicBoolean(true);
+		final AtomicLong reads = new AtomicLong();
+		Thread reader[] = new Thread[readers];
+		for (int r = 0; r < readers; r++)
+		{
+			final int first = r;
+			reader[r] = new Thread(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					long count = 0;
+					for (int i = first; running.get(); i = (i + 7) % query.length)
+					{
+						learner.getClassifier().classify(query[i]);
+						count += 1;
+					}
+					reads.addAndGet(count);
+				}
+			});
+			reader[r].start();
+		} // r
+
+		// Corrections arrive one at a time, each published before the next.
+		LVQ_Classifier before = learner.getClassifier();
+		LVQ_Classifier early = null;
+		long worst = 0;
+		start = System.nanoTime();
+		for (int i = 0; i < corrections; i++)
+		{
+			int q = i % half;
+			long t = System.nanoTime();
+			LVQ_Classifier latest = learner.learn(query[q], fresh[q]);
+			worst = Math.max(worst, System.nanoTime() - t);
+			if (i == 19)
+			{
+				early = latest;
+			}
+		}
+		long elapsed = System.nanoTime() - start;
+		running.set(false);
+		for (int r = 0; r < readers; r++)
+		{
+			reader[r].join();
+		}
+
+		LVQ_Classifier after = learner.getClassifier();
+		int shared = 0;
+		for (int k = 0; early != null && k < classes; k++)
+		{
+			if (early.sharesRow(before, k))
+			{
+				shared += 1;
+			}
+		}
+		int mismatches = 0;
+		for (int i = 0; i < query.length; i++)
+		{
+			if (after.getCluster(query[i]) != network.getCluster(query[i]))
+			{
+				mismatches += 1;
+			}
+		}
+
+		System.out.println(String.format("%d corrections learned and published: %.1f us each on average, %.2f ms at worst", corrections, elapsed / 1000.0 / corrections,
+				worst / 1e6));
+		System.out.println(readers + " readers classified " + reads.get() + " patterns meanwhile; version now " + after.getVersion());
+		System.out.println("Rows of version 20 shared with version 0: " + shared + " of " + classes);
+		System.out.println(String.format("Held-out accuracy %.3f before the corrections, %.3f after; published version and network disagree on %d patterns",
+				accuracy(before, heldOut, heldOutTarget), accuracy(after, heldOut, heldOutTarget), mismatches));
+		return;
+	}
+
+	private static double accuracy(LVQ_Classifier classifier, int[][] patterns, int[] targets)
+	{
+		int correct = 0;
+		for (int i = 0; i < patterns.length; i++)
+		{
+			if (classifier.classify(patterns[i]) == targets[i])
+			{
+				correct += 1;
+			}
+		}
+		return (double) correct / (double) patterns.length;
+	}
+
+}
@@ -0,0 +1,458 @@
+package com.mnemstudio.dataset;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A file of binary training vectors with an int label each and, optionally, a name each (the glyphs A1 ... K3 of
+ * LVQ_Example1 and ART1_Example2, or gigabytes of real data), read through a memory mapping.
+ *
+ * The file is big-endian, as written by DataOutputStream:
+ *
+ * <pre>
+ * header   int MAGIC, int VERSION, long rows, int columns, int flags (1 = names), long names offset (0 = none)
+ * rows     per row: int label, int 0, then (columns + 63) / 64 longs, bit j % 64 of long j / 64 = component j
+ * names    (rows + 1) longs, where name i is bytes [offset i, offset i + 1) of the pool after them, then the pool (UTF-8)
+ * </pre>
+ *
+ * Every row starts on a multiple of 8 bytes. The constructor maps the whole file, in segments of 1 GB as one mapping
+ * cannot pass 2 GB, and reads nothing but the header and the bounds of the names; it throws IOException if the file is
+ * too short for what the header says it holds. Rows are read from the mapping when asked for, a word at a time,
+ * so opening a file of any size takes the same time and the data never lands on the Java heap. As the segments are a
+ * multiple of 8 bytes long, no long or int ever crosses from one to the next. ones() hands a row to the index-list
+ * inputs of ART1_Network.present() and LVQ_BinaryNetwork; row() expands it to the 0/1 int[] of the examples.
+ *
+ * A dataset is read-only, and any number of threads can read it at once. Writer builds the files, row by row.
+ *
+ */
+public class BitDataset
+{
+	public static final int MAGIC = 0x42495444; // "BITD"
+	public static final int VERSION = 1;
+	public static final int HEADER_BYTES = 32;
+	public static final int FLAG_NAMES = 1;
+
+	private static final int SEGMENT_SHIFT = 30;
+	private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1L;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final MappedByteBuffer segment[];
+	private final int rows;
+	private final int columns;
+	private final int words; // Longs per row.
+	private final long rowBytes; // Bytes per row, label included.
+	private final long namesOffset;
+
+	public BitDataset(File file) throws IOException
+	{
+		RandomAccessFile in = new RandomAccessFile(file, "r");
+		try
+		{
+			FileChannel channel = in.getChannel();
+			long size = channel.size();
+			segment = new MappedByteBuffer[(int) ((size + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+			for (int s = 0; s < segment.length; s++)
+			{
+				long start = (long) s << SEGMENT_SHIFT;
+				segment[s] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(size - start, 1L << SEGMENT_SHIFT));
+			}
+		}
+		finally
+		{
+			in.close(); // The mappings stay valid.
+		}
+
+		long size = segment.length == 0 ? 0L : ((long) (segment.length - 1) << SEGMENT_SHIFT) + segment[segment.length - 1].capacity();
+		if (size < HEADER_BYTES || getInt(0) != MAGIC)
+		{
+			throw new IOException(file + " is not a BitDataset file");
+		}
+		if (getInt(4) != VERSION)
+		{
+			throw new IOException(file + " has version " + getInt(4) + ", expected " + VERSION);
+		}
+		long rowCount = getLong(8);
+		if (rowCount > Integer.MAX_VALUE)
+		{
+			throw new IOException(file + " has " + rowCount + " rows, more than an int can index");
+		}
+		rows = (int) rowCount;
+		columns = getInt(16);
+		if (rows < 0 || columns < 0)
+		{
+			throw new IOException(file + " has " + rows + " rows of " + columns + " columns");
+		}
+		words = wordsFor(columns);
+		rowBytes = 8L + 8L * words;
+		namesOffset = (getInt(20) & FLAG_NAMES) != 0 ? getLong(24) : 0L;
+
+		// A truncated file fails here, not halfway through a pass over it.
+		long rowsEnd = HEADER_BYTES + rows * rowBytes;
+		if (size < rowsEnd)
+		{
+			throw new IOException(file + " is " + size + " bytes, too short for " + rows + " rows of " + columns + " columns");
+		}
+		if (namesOffset != 0L)
+		{
+			long pool = namesOffset + 8L * (rows + 1L);
+			if (namesOffset < rowsEnd || pool > size || pool + getLong(pool - 8L) > size || getLong(namesOffset) != 0L)
+			{
+				throw new IOException(file + " has a names section that does not fit in its " + size + " bytes");
+			}
+		}
+		return;
+	}
+
+	public static int wordsFor(int columns)
+	{
+		return (columns + 63) >>> 6;
+	}
+
+	private int getInt(long offset)
+	{
+		return segment[(int) (offset >>> SEGMENT_SHIFT)].getInt((int) (offset & SEGMENT_MASK));
+	}
+
+	private long getLong(long offset)
+	{
+		return segment[(int) (offset >>> SEGMENT_SHIFT)].getLong((int) (offset & SEGMENT_MASK));
+	}
+
+	private byte getByte(long offset)
+	{
+		return segment[(int) (offset >>> SEGMENT_SHIFT)].get((int) (offset & SEGMENT_MASK));
+	}
+
+	private long rowOffset(int row)
+	{
+		if (row < 0 || row >= rows)
+		{
+			throw new IndexOutOfBoundsException("Row " + row + " of " + rows);
+		}
+		return HEADER_BYTES + row * rowBytes;
+	}
+
+	public int getLabel(int row)
+	{
+		return getInt(rowOffset(row));
+	}
+
+	/**
+	 * Components 64 * word .. 64 * word + 63 of the row, component 64 * word + b in bit b.
+	 */
+	public long getWord(int row, int word)
+	{
+		return getLong(rowOffset(row) + 8L + 8L * word);
+	}
+
+	public int get(int row, int column)
+	{
+		return (int) ((getWord(row, column >>> 6) >>> column) & 1L);
+	}
+
+	/**
+	 * Writes the ascending indices of the row's 1's to dest and returns how many there are.
+	 */
+	public int ones(int row, int[] dest)
+	{
+		long offset = rowOffset(row) + 8L;
+		int count = 0;
+		for (int word = 0; word < words; word++)
+		{
+			long rest = getLong(offset + 8L * word);
+			while (rest != 0L)
+			{
+				dest[count++] = (word << 6) + Long.numberOfTrailingZeros(rest);
+				rest &= rest - 1L;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * The row as 0/1 ints, in dest (columns long) if given, else in a new array.
+	 */
+	public int[] row(int row, int[] dest)
+	{
+		int pattern[] = dest != null ? dest : new int[columns];
+		long offset = rowOffset(row) + 8L;
+		for (int word = 0; word < words; word++)
+		{
+			long bits = getLong(offset + 8L * word);
+			int end = Math.min(columns, (word + 1) << 6);
+			for (int j = word << 6; j < end; j++)
+			{
+				pattern[j] = (int) ((bits >>> j) & 1L);
+			}
+		}
+		return pattern;
+	}
+
+	/**
+	 * Copies the row's words to dest[offset .. offset + getWords() - 1].
+	 */
+	public void copyRow(int row, long[] dest, int offset)
+	{
+		long start = rowOffset(row) + 8L;
+		for (int word = 0; word < words; word++)
+		{
+			dest[offset + word] = getLong(start + 8L * word);
+		}
+		return;
+	}
+
+	public boolean hasNames()
+	{
+		return namesOffset != 0L;
+	}
+
+	/**
+	 * The row's name, or null if the file has none.
+	 */
+	public String getName(int row)
+	{
+		if (namesOffset == 0L)
+		{
+			return null;
+		}
+		rowOffset(row); // Checks the row.
+		long pool = namesOffset + 8L * (rows + 1L);
+		long start = getLong(namesOffset + 8L * row);
+		long end = getLong(namesOffset + 8L * (row + 1L));
+		byte bytes[] = new byte[(int) (end - start)];
+		for (int i = 0; i < bytes.length; i++)
+		{
+			bytes[i] = getByte(pool + start + i);
+		}
+		return new String(bytes, UTF8);
+	}
+
+	/**
+	 * All labels, in a new array.
+	 */
+	public int[] getLabels()
+	{
+		int labels[] = new int[rows];
+		for (int row = 0; row < rows; row++)
+		{
+			labels[row] = getLabel(row);
+		}
+		return labels;
+	}
+
+	public int getRows()
+	{
+		return rows;
+	}
+
+	public int getColumns()
+	{
+		return columns;
+	}
+
+	public int getWords()
+	{
+		return words;
+	}
+
+	/**
+	 * Writes 0/1 patterns with their labels, and names if not null, to a new file.
+	 */
+	public static void write(File file, int[][] patterns, int[] labels, String[] names) throws IOException
+	{
+		Writer writer = new Writer(file, patterns.length == 0 ? 0 : patterns[0].length, names != null);
+		try
+		{
+			for (int row = 0; row < patterns.length; row++)
+			{
+				writer.add(patterns[row], labels[row], names != null ? names[row] : null);
+			}
+		}
+		finally
+		{
+			writer.close();
+		}
+		return;
+	}
+
+	/**
+	 * Writes a file row by row; the rows go straight to disk, only the names are kept until close().
+	 */
+	public static final class Writer implements Closeable
+	{
+		private final File file;
+		private final int columns;
+		private final boolean names;
+		private final DataOutputStream out;
+		private final long bits[];
+		private long rows = 0;
+		private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+		private long nameEnd[] = new long[16];
+
+		public Writer(File file, int columns, boolean names) throws IOException
+		{
+			this.file = file;
+			this.columns = columns;
+			this.names = names;
+			bits = new long[wordsFor(columns)];
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+			writeHeader(out, 0L, columns, names, 0L); // The counts are filled in by close().
+			return;
+		}
+
+		/**
+		 * Adds a row from its 0/1 components (non-zero counts as 1).
+		 */
+		public void add(int[] pattern, int label, String name) throws IOException
+		{
+			for (int word = 0; word < bits.length; word++)
+			{
+				bits[word] = 0L;
+			}
+			for (int j = 0; j < columns; j++)
+			{
+				if (pattern[j] != 0)
+				{
+					bits[j >>> 6] |= 1L << j;
+				}
+			}
+			add(bits, label, name);
+			return;
+		}
+
+		/**
+		 * Adds a row from its words, as getWord() gives them back. Bits at or above columns in the last word are
+		 * dropped, so that every row read back has only components below columns.
+		 */
+		public void add(long[] words, int label, String name) throws IOException
+		{
+			out.writeInt(label);
+			out.writeInt(0);
+			for (int word = 0; word < bits.length; word++)
+			{
+				long value = words[word];
+				if (word == bits.length - 1 && (columns & 63) != 0)
+				{
+					value &= (1L << columns) - 1L;
+				}
+				out.writeLong(value);
+			}
+			if (names)
+			{
+				byte bytes[] = (name != null ? name : "").getBytes(UTF8);
+				pool.write(bytes, 0, bytes.length);
+				if (rows + 1 >= nameEnd.length)
+				{
+					nameEnd = Arrays.copyOf(nameEnd, nameEnd.length * 2);
+				}
+				nameEnd[(int) rows + 1] = pool.size();
+			}
+			rows += 1;
+			return;
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			long namesOffset = 0L;
+			if (names)
+			{
+				namesOffset = HEADER_BYTES + rows * (8L + 8L * bits.length);
+				for (long row = 0; row <= rows; row++)
+				{
+					out.writeLong(nameEnd[(int) row]);
+				}
+				pool.writeTo(out);
+			}
+			out.close();
+
+			// Now the counts are known.
+			RandomAccessFile header = new RandomAccessFile(file, "rw");
+			try
+			{
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream(HEADER_BYTES);
+				writeHeader(new DataOutputStream(bytes), rows, columns, names, namesOffset);
+				header.write(bytes.toByteArray());
+			}
+			finally
+			{
+				header.close();
+			}
+			return;
+		}
+
+		private static void writeHeader(DataOutputStream out, long rows, int columns, boolean names, long namesOffset) throws IOException
+		{
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(rows);
+			out.writeInt(columns);
+			out.writeInt(names ? FLAG_NAMES : 0);
+			out.writeLong(namesOffset);
+			out.flush();
+			return;
+		}
+	}
+
+	public static void main(String[] args) throws IOException
+	{
+		int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		int columns = args.length > 1 ? Integer.parseInt(args[1]) : 1024;
+		File file = File.createTempFile("bitdataset", ".bin");
+		file.deleteOnExit();
+
+		// Writes random rows, 1/8 ones, row by row.
+		Random random = new Random(1L);
+		long start = System.nanoTime();
+		Writer writer = new Writer(file, columns, false);
+		long words[] = new long[wordsFor(columns)];
+		for (int row = 0; row < rows; row++)
+		{
+			for (int word = 0; word < words.length; word++)
+			{
+				words[word] = random.nextLong() & random.nextLong() & random.nextLong();
+			}
+			writer.add(words, row % 100, null);
+		}
+		writer.close();
+		System.out.println(String.format("Wrote %d rows x %d columns: %d MB in %d ms", rows, columns, file.length() >> 20, (System.nanoTime() - start) / 1000000));
+
+		start = System.nanoTime();
+		BitDataset data = new BitDataset(file);
+		System.out.println(String.format("Opened in %.2f ms", (System.nanoTime() - start) / 1e6));
+
+		// One pass over every row as index lists, as a training loop would read it.
+		start = System.nanoTime();
+		int ones[] = new int[columns];
+		long total = 0;
+		for (int row = 0; row < data.getRows(); row++)
+		{
+			total += data.ones(row, ones) + data.getLabel(row);
+		}
+		System.out.println(String.format("Read every row from the mapping in %d ms (checksum %d)", (System.nanoTime() - start) / 1000000, total));
+
+		// What loading it onto the heap as int[][] would take.
+		start = System.nanoTime();
+		int heap[][] = new int[Math.min(rows, 200000)][];
+		for (int row = 0; row < heap.length; row++)
+		{
+			heap[row] = data.row(row, null);
+		}
+		long elapsed = System.nanoTime() - start;
+		System.out.println(String.format("Loading %d rows as int[][]: %d ms, %d MB of heap (%d ms for all rows)", heap.length, elapsed / 1000000,
+				(long) heap.length * (columns * 4L + 16L) >> 20, elapsed / 1000000 * rows / heap.length));
+		return;
+	}
+
+}
@@ -3,7 +3,9 @@ package com.mnemstudio.kohonen.SOM_SelfOrganizingNetwork;
 /**
  * http://mnemstudio.org/neural-networks-som1.htm
  * 
- * 
+ * A linear array of Maximum_Clusters cluster units with no neighbourhood: only the winning unit learns. The network is
+ * an SOM_Network of one grid dimension, trained with a radius of 0 and the learning rate of this example, which decays
+ * by Decay_Rate after each pass until it falls to Minimum_Alpha.
  * 
  * @author Bart88
  *
@@ -17,13 +19,11 @@ public class SOM_Class1
 	private double mAlpha;
 	private double decayRate;
 	private int mIterations;
-	private double D[];
-
-	private double w[][] = new double[][]
-	{
-	{ 0.2, 0.6, 0.5, 0.9 },
-	{ 0.8, 0.4, 0.7, 0.3 } };
+	private SOM_Network mNetwork;
 
+	/**
+	 * The weights start random, between 0 and 1; InitializeWeights() sets them.
+	 */
 	public SOM_Class1(int numVectors, int Maximum_Clusters, double Alpha_Start, double Minimum_Alpha, double Decay_Rate, int Vector_Length)
 	{
 		mVectors = numVectors;
@@ -33,37 +33,44 @@ public class SOM_Class1
 		decayRate = Decay_Rate;
 		mIterations = 0;
 		maxClusters = Maximum_Clusters;
-		D = new double[maxClusters];
+		mNetwork = new SOM_Network(new int[] { maxClusters }, SOM_Network.RECTANGULAR, mVecLen);
+		mNetwork.setNeighbourhood(SOM_Network.BUBBLE);
+
+		java.util.Random random = new java.util.Random(1L);
+		double weights[] = new double[mVecLen];
+		for (int i = 0; i < maxClusters; i++)
+		{
+			for (int j = 0; j < mVecLen; j++)
+			{
+				weights[j] = random.nextDouble();
+			}
+			mNetwork.initializeWeights(i, weights);
+		} // i
+		return;
+	}
+
+	public void InitializeWeights(double Weights[][])
+	{
+		for (int i = 0; i < maxClusters; i++)
+		{
+			mNetwork.initializeWeights(i, Weights[i]);
+		}
 		return;
 	}
 
-	public void Train(int Patterns[][], int TrainingTests[][])
+	public void Train(int Patterns[][])
 	{
-		int Iterations = 0;
-		int i;
 		int VecNum;
-		int DMin;
 
+		double input[][] = ToDouble(Patterns);
 		while (mAlpha > minAlpha)
 		{
-			Iterations += 1;
+			mIterations += 1;
 
 			for (VecNum = 0; VecNum < mVectors; VecNum++)
 			{
-				// Compute input.
-				ComputeInput(VecNum, TrainingTests);
-
-				// See which is smaller, D(0) or D(1)?
-				DMin = Minimum(D[0], D[1]);
-				// System.out.println("Closest is D(" + DMin + ")");
-
-				// Update the weights on the winning unit.
-				for (i = 0; i < mVectors; i++)
-				{
-					w[DMin][i] = w[DMin][i] + (mAlpha * (Patterns[VecNum][i] - w[DMin][i]));
-					// System.out.println(" w(" + i + ")= " + w[DMin][i]);
-				}
-
+				// Move the winning unit, and no other, towards the pattern.
+				mNetwork.learn(input[VecNum], mAlpha, 0.0);
 			}
 
 			// Reduce the learning rate.
@@ -83,16 +90,13 @@ public class SOM_Class1
 		// Print clusters created.
 		System.out.println("Clusters for training input:");
 
+		double input[][] = ToDouble(Patterns);
 		for (VecNum = 0; VecNum < mVectors; VecNum++)
 		{
-			// Compute input.
-			ComputeInput(VecNum, TrainingTests);
-
-			// See which is smaller, D(0) or D(1)?
-			DMin = Minimum(D[0], D[1]);
+			DMin = mNetwork.getCluster(input[VecNum]);
 
 			System.out.print("\nVector ( ");
-			for (i = 0; i < mVectors; i++)
+			for (i = 0; i < mVecLen; i++)
 			{
 				System.out.print(Patterns[VecNum][i] + ", ");
 			} // i
@@ -106,23 +110,20 @@ public class SOM_Class1
 			System.out.println("Weights for Node " + i + " connections:");
 			for (j = 0; j < mVecLen; j++)
 			{
-				System.out.print(dfm.format(w[i][j]) + ", ");
+				System.out.print(dfm.format(mNetwork.getWeight(i, j)) + ", ");
 			} // j
 			System.out.println();
 		} // i
 
 		// Print post-training tests.
 		System.out.println("Categorized test input:");
-		for (VecNum = 0; VecNum < mVectors; VecNum++)
+		double tests[][] = ToDouble(TrainingTests);
+		for (VecNum = 0; VecNum < tests.length; VecNum++)
 		{
-			// Compute input.
-			ComputeInput(VecNum, TrainingTests);
-
-			// See which is smaller, D(0) or D(1)?
-			DMin = Minimum(D[0], D[1]);
+			DMin = mNetwork.getCluster(tests[VecNum]);
 
 			System.out.print("\nVector ( ");
-			for (i = 0; i < mVectors; i++)
+			for (i = 0; i < mVecLen; i++)
 			{
 				System.out.print(TrainingTests[VecNum][i] + ", ");
 			} // i
@@ -132,33 +133,17 @@ public class SOM_Class1
 		return;
 	}
 
-	private void ComputeInput(int VectorNumber, int Training_Tests[][])
+	private double[][] ToDouble(int Patterns[][])
 	{
-		int i, j;
-
-		D[0] = 0.0;
-		D[1] = 0.0;
-		for (i = 0; i < maxClusters; i++)
+		double result[][] = new double[Patterns.length][mVecLen];
+		for (int VecNum = 0; VecNum < Patterns.length; VecNum++)
 		{
-			for (j = 0; j < mVectors; j++)
+			for (int i = 0; i < mVecLen; i++)
 			{
-				D[i] += Math.pow((w[i][j] - Training_Tests[VectorNumber][j]), 2);
-				// System.out.println("D= " + D[i]);
-			} // j
-		} // i
-		return;
-	}
-
-	private int Minimum(double ValueA, double ValueB)
-	{
-		if (ValueA > ValueB)
-		{
-			return 1;
-		}
-		else
-		{
-			return 0;
-		}
+				result[VecNum][i] = Patterns[VecNum][i];
+			}
+		} // VecNum
+		return result;
 	}
 
 	public int Iterations()
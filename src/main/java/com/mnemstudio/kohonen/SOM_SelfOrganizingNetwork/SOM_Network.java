@@ -0,0 +1,778 @@
+package com.mnemstudio.kohonen.SOM_SelfOrganizingNetwork;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Self-Organizing Network
+ *
+ * A Kohonen map of any size: the nodes sit on a rectangular grid of any number of dimensions, or on a hexagonal grid
+ * of rows and columns, and every input pulls the winning node and its grid neighbours towards it.
+ *
+ * The codebook is one flat array, node after node in row-major order of the grid (the last grid dimension varies
+ * fastest), vecLen weights each. learn() finds the best-matching unit, the node nearest the input, and moves every
+ * node within "radius" grid units of it by alpha * h(d) of the way to the input, d being the node's grid distance from
+ * the winner. h is 1 for the BUBBLE neighbourhood; for GAUSSIAN it is exp(-d^2 / (2 sigma^2)) with sigma = radius / 3,
+ * which has fallen to about 1% at the radius, where it is cut off. Only the box of grid positions around the winner
+ * that can hold such nodes is looked at. training() runs a whole schedule: alpha and the radius both shrink
+ * geometrically, input by input, from their start to their end values over all the epochs.
+ *
+ * The search for the winner skips most nodes without reading their weights. Each node keeps its projections onto the
+ * first few principal axes of the training patterns; as the axes are orthonormal, the squared distance between the
+ * projections of the input and of a node is never more than their squared distance, so a node whose projections are
+ * already further away than the best node found so far cannot win. An update moves the projections the same fraction
+ * of the way as the weights, so they are kept up to date at a few operations per node, and are recomputed from the
+ * weights at each epoch. The nodes that are left are summed until the partial sum exceeds the best full sum. Training
+ * starts the search of each input at the node it won last epoch, which is usually its winner again and so gives the
+ * tightest bound. None of this changes the result: finished sums are the same additions as the full search, and ties
+ * go to the lowest node number. setPruning(false) switches to the full search, for comparison.
+ *
+ * initializeLinear() spreads the nodes over the plane (or space) of the leading principal axes, in grid order, as a
+ * starting point that is already ordered; initializeRandom() is the classic start.
+ *
+ * Grid distances are between node positions: on the rectangular grid the positions are the grid indices; on the
+ * hexagonal grid, odd rows are shifted half a column to the right and rows are sqrt(3) / 2 apart, so that each node
+ * has six neighbours at distance 1.
+ *
+ */
+public class SOM_Network
+{
+	public static final int RECTANGULAR = 0;
+	public static final int HEXAGONAL = 1;
+
+	public static final int BUBBLE = 0;
+	public static final int GAUSSIAN = 1;
+
+	// Relative slack on the projection test, far above the rounding error of the projections, so that a node is only
+	// skipped when it is certainly further away than the best one.
+	private static final double PRUNING_MARGIN = 1e-9;
+	private static final int AXES = 4; // Principal axes kept for the projection test.
+	private static final int POWER_ITERATIONS = 30;
+
+	private final int dims[]; // Size of the grid along each of its dimensions.
+	private final int stride[]; // Node number step along each grid dimension.
+	private final int topology;
+	private final int nodes;
+	private final int vecLen;
+
+	private final double w[]; // Codebook, node k at [k * vecLen, (k + 1) * vecLen).
+	private final double norm[]; // Length of each node's weight vector.
+
+	// Principal axes of the training patterns, axis p at [p * vecLen, (p + 1) * vecLen), the variance of the patterns
+	// along each, and the projections of node k onto them at [k * AXES, (k + 1) * AXES). axes is null until computed.
+	private double axes[] = null;
+	private final double variance[] = new double[AXES];
+	private final double mean[];
+	private final double projection[];
+	private final double patternProjection[] = new double[AXES];
+	private final double position[]; // Grid position of node k at [k * dims.length, (k + 1) * dims.length).
+
+	private int neighbourhood = GAUSSIAN;
+	private double alphaStart = 0.5;
+	private double alphaEnd = 0.01;
+	private double radiusStart;
+	private double radiusEnd = 1.0;
+	private boolean pruning = true;
+
+	// Scratch space for the neighbourhood box.
+	private final int low[];
+	private final int high[];
+	private final int index[];
+
+	private int searchHint = -1; // Node to look at first in the next search, -1 for none.
+	private double winnerDistance = 0.0; // Squared distance to the last winner found.
+	private int secondNode = -1; // Second-best node of the last bestTwo().
+	private long terms = 0; // Squared differences summed, for comparing the searches.
+	private int epochs = 0;
+
+	/**
+	 * A map of dims[0] x dims[1] x ... nodes, each with vecLen weights, all 0 until initialized. A hexagonal grid
+	 * must have two dimensions, rows and columns.
+	 */
+	public SOM_Network(int[] dims, int topology, int vecLen)
+	{
+		if (topology != RECTANGULAR && topology != HEXAGONAL)
+		{
+			throw new IllegalArgumentException("Unknown topology: " + topology);
+		}
+		if (topology == HEXAGONAL && dims.length != 2)
+		{
+			throw new IllegalArgumentException("A hexagonal grid has 2 dimensions, not " + dims.length);
+		}
+		this.dims = dims.clone();
+		this.topology = topology;
+		this.vecLen = vecLen;
+
+		int count = 1;
+		stride = new int[dims.length];
+		for (int a = dims.length - 1; a >= 0; a--)
+		{
+			if (dims[a] < 1)
+			{
+				throw new IllegalArgumentException("Grid dimensions must be at least 1: " + Arrays.toString(dims));
+			}
+			stride[a] = count;
+			count *= dims[a];
+		}
+		nodes = count;
+
+		w = new double[nodes * vecLen];
+		norm = new double[nodes];
+		mean = new double[vecLen];
+		projection = new double[nodes * AXES];
+		position = new double[nodes * dims.length];
+		for (int k = 0; k < nodes; k++)
+		{
+			for (int a = 0; a < dims.length; a++)
+			{
+				position[k * dims.length + a] = (k / stride[a]) % dims[a];
+			}
+			if (topology == HEXAGONAL)
+			{
+				int row = k / stride[0];
+				position[k * 2] = row * Math.sqrt(3.0) / 2.0;
+				position[k * 2 + 1] += (row & 1) == 1 ? 0.5 : 0.0;
+			}
+		} // k
+
+		// By default the radius starts at half the longest side, so that early inputs move most of the map.
+		int longest = 0;
+		for (int a = 0; a < dims.length; a++)
+		{
+			longest = Math.max(longest, dims[a]);
+		}
+		radiusStart = Math.max(1.0, longest / 2.0);
+
+		low = new int[dims.length];
+		high = new int[dims.length];
+		index = new int[dims.length];
+		return;
+	}
+
+	public void initializeWeights(int node, double[] weights)
+	{
+		System.arraycopy(weights, 0, w, node * vecLen, vecLen);
+		norm[node] = length(node);
+		project(node);
+		return;
+	}
+
+	/**
+	 * Sets every weight to a random value between the smallest and the largest value of its component in the patterns.
+	 */
+	public void initializeRandom(double[][] patterns, long seed)
+	{
+		double min[] = new double[vecLen];
+		double max[] = new double[vecLen];
+		Arrays.fill(min, Double.POSITIVE_INFINITY);
+		Arrays.fill(max, Double.NEGATIVE_INFINITY);
+		for (int p = 0; p < patterns.length; p++)
+		{
+			for (int i = 0; i < vecLen; i++)
+			{
+				min[i] = Math.min(min[i], patterns[p][i]);
+				max[i] = Math.max(max[i], patterns[p][i]);
+			}
+		} // p
+
+		Random random = new Random(seed);
+		for (int k = 0; k < nodes; k++)
+		{
+			for (int i = 0; i < vecLen; i++)
+			{
+				w[k * vecLen + i] = min[i] + random.nextDouble() * (max[i] - min[i]);
+			}
+			norm[k] = length(k);
+			project(k);
+		} // k
+		return;
+	}
+
+	/**
+	 * Places the nodes on an even grid over the leading principal axes of the patterns, grid dimension a along axis a,
+	 * two standard deviations each side of the mean; grid dimensions beyond the axes are left at the mean.
+	 */
+	public void initializeLinear(double[][] patterns)
+	{
+		setPrincipalAxes(patterns);
+		int g = dims.length;
+		for (int k = 0; k < nodes; k++)
+		{
+			for (int i = 0; i < vecLen; i++)
+			{
+				w[k * vecLen + i] = mean[i];
+			}
+			for (int a = 0; a < g && a < AXES; a++)
+			{
+				double t = dims[a] > 1 ? (double) getCoordinate(k, a) / (dims[a] - 1) - 0.5 : 0.0;
+				double spread = 4.0 * t * Math.sqrt(variance[a]);
+				for (int i = 0; i < vecLen; i++)
+				{
+					w[k * vecLen + i] += spread * axes[a * vecLen + i];
+				}
+			}
+			norm[k] = length(k);
+			project(k);
+		} // k
+		return;
+	}
+
+	/**
+	 * Computes the mean and the first principal axes of the patterns, by power iteration with each axis kept
+	 * orthogonal to the ones before, and the projections of every node onto them.
+	 */
+	public void setPrincipalAxes(double[][] patterns)
+	{
+		Arrays.fill(mean, 0.0);
+		for (int p = 0; p < patterns.length; p++)
+		{
+			for (int i = 0; i < vecLen; i++)
+			{
+				mean[i] += patterns[p][i];
+			}
+		}
+		for (int i = 0; i < vecLen; i++)
+		{
+			mean[i] /= patterns.length;
+		}
+
+		double found[] = new double[AXES * vecLen];
+		double v[] = new double[vecLen];
+		double next[] = new double[vecLen];
+		Random random = new Random(1L);
+		for (int axis = 0; axis < AXES && axis < vecLen; axis++)
+		{
+			for (int i = 0; i < vecLen; i++)
+			{
+				v[i] = random.nextDouble() - 0.5;
+			}
+			orthonormalize(v, found, axis);
+			double lambda = 0.0;
+			for (int iteration = 0; iteration < POWER_ITERATIONS; iteration++)
+			{
+				// next = C v, C being the covariance of the patterns.
+				Arrays.fill(next, 0.0);
+				for (int p = 0; p < patterns.length; p++)
+				{
+					double dot = 0.0;
+					for (int i = 0; i < vecLen; i++)
+					{
+						dot += (patterns[p][i] - mean[i]) * v[i];
+					}
+					for (int i = 0; i < vecLen; i++)
+					{
+						next[i] += dot * (patterns[p][i] - mean[i]);
+					}
+				} // p
+				lambda = orthonormalize(next, found, axis) / patterns.length;
+				System.arraycopy(next, 0, v, 0, vecLen);
+			} // iteration
+			System.arraycopy(v, 0, found, axis * vecLen, vecLen);
+			variance[axis] = lambda;
+		} // axis
+		axes = found;
+
+		for (int k = 0; k < nodes; k++)
+		{
+			project(k);
+		}
+		return;
+	}
+
+	/**
+	 * Removes from v its components along the first "count" axes, then scales it to length 1. Returns its length
+	 * before scaling.
+	 */
+	private double orthonormalize(double[] v, double[] axes, int count)
+	{
+		for (int q = 0; q < count; q++)
+		{
+			double dot = 0.0;
+			for (int i = 0; i < vecLen; i++)
+			{
+				dot += v[i] * axes[q * vecLen + i];
+			}
+			for (int i = 0; i < vecLen; i++)
+			{
+				v[i] -= dot * axes[q * vecLen + i];
+			}
+		} // q
+		double length = 0.0;
+		for (int i = 0; i < vecLen; i++)
+		{
+			length += v[i] * v[i];
+		}
+		length = Math.sqrt(length);
+		for (int i = 0; i < vecLen; i++)
+		{
+			v[i] = length > 0.0 ? v[i] / length : 0.0;
+		}
+		return length;
+	}
+
+	private void project(int node)
+	{
+		projectInto(w, node * vecLen, projection, node * AXES);
+		return;
+	}
+
+	/**
+	 * Projections of the vector at from[offset] onto the axes, into to[at .. at + AXES); all 0 without axes.
+	 */
+	private void projectInto(double[] from, int offset, double[] to, int at)
+	{
+		for (int p = 0; p < AXES; p++)
+		{
+			double dot = 0.0;
+			for (int i = 0; axes != null && i < vecLen; i++)
+			{
+				dot += from[offset + i] * axes[p * vecLen + i];
+			}
+			to[at + p] = dot;
+		}
+		return;
+	}
+
+	public void setNeighbourhood(int neighbourhood)
+	{
+		if (neighbourhood != BUBBLE && neighbourhood != GAUSSIAN)
+		{
+			throw new IllegalArgumentException("Unknown neighbourhood: " + neighbourhood);
+		}
+		this.neighbourhood = neighbourhood;
+		return;
+	}
+
+	/**
+	 * Learning rate at the first and the last input of training(); both must be above 0.
+	 */
+	public void setLearningRate(double start, double end)
+	{
+		alphaStart = start;
+		alphaEnd = end;
+		return;
+	}
+
+	/**
+	 * Neighbourhood radius, in grid units, at the first and the last input of training(); both must be above 0.
+	 */
+	public void setRadius(double start, double end)
+	{
+		radiusStart = start;
+		radiusEnd = end;
+		return;
+	}
+
+	public void setPruning(boolean pruning)
+	{
+		this.pruning = pruning;
+		return;
+	}
+
+	/**
+	 * Presents the patterns, in order, epochs times, with alpha and the radius shrinking from input to input.
+	 */
+	public void training(double[][] patterns, int epochs)
+	{
+		if (axes == null)
+		{
+			setPrincipalAxes(patterns);
+		}
+		long steps = (long) epochs * patterns.length;
+		int hint[] = new int[patterns.length];
+		Arrays.fill(hint, -1);
+		long step = 0;
+		for (int epoch = 0; epoch < epochs; epoch++)
+		{
+			// The projections, kept up by the updates, are made exact again.
+			for (int k = 0; k < nodes; k++)
+			{
+				project(k);
+			}
+			for (int vecNum = 0; vecNum < patterns.length; vecNum++)
+			{
+				double t = steps > 1 ? (double) step / (double) (steps - 1) : 0.0;
+				double alpha = alphaStart * Math.pow(alphaEnd / alphaStart, t);
+				double radius = radiusStart * Math.pow(radiusEnd / radiusStart, t);
+
+				// Last epoch's winner first; in the first epoch, the winner of the input before.
+				if (hint[vecNum] >= 0)
+				{
+					searchHint = hint[vecNum];
+				}
+				hint[vecNum] = learn(patterns[vecNum], alpha, radius);
+				step += 1;
+			}
+			this.epochs += 1;
+		} // epoch
+		return;
+	}
+
+	/**
+	 * One step of training: moves the best-matching unit and its neighbours within the radius towards the pattern.
+	 * Returns the best-matching unit.
+	 */
+	public int learn(double[] pattern, double alpha, double radius)
+	{
+		int winner = nearest(pattern); // Leaves the pattern's projections in patternProjection.
+		searchHint = winner;
+
+		// The box of grid indices around the winner that can hold nodes within the radius.
+		int g = dims.length;
+		for (int a = 0; a < g; a++)
+		{
+			double reach = radius;
+			if (topology == HEXAGONAL)
+			{
+				reach = a == 0 ? radius / (Math.sqrt(3.0) / 2.0) : radius + 0.5;
+			}
+			int at = (winner / stride[a]) % dims[a];
+			low[a] = Math.max(0, at - (int) Math.floor(reach));
+			high[a] = Math.min(dims[a] - 1, at + (int) Math.floor(reach));
+			index[a] = low[a];
+		}
+
+		double radiusSquared = radius * radius;
+		double scale = radius > 0.0 ? 4.5 / radiusSquared : 0.0; // 1 / (2 sigma^2) with sigma = radius / 3.
+		while (true)
+		{
+			int node = 0;
+			for (int a = 0; a < g; a++)
+			{
+				node += index[a] * stride[a];
+			}
+			double d2 = 0.0;
+			for (int a = 0; a < g; a++)
+			{
+				double diff = position[node * g + a] - position[winner * g + a];
+				d2 += diff * diff;
+			}
+			if (d2 <= radiusSquared)
+			{
+				double h = neighbourhood == GAUSSIAN ? Math.exp(-d2 * scale) : 1.0;
+				update(node, pattern, alpha * h);
+			}
+
+			// Next position in the box, the last dimension fastest.
+			int a = g - 1;
+			while (a >= 0 && index[a] == high[a])
+			{
+				index[a] = low[a];
+				a -= 1;
+			}
+			if (a < 0)
+			{
+				break;
+			}
+			index[a] += 1;
+		}
+		return winner;
+	}
+
+	private void update(int node, double[] pattern, double rate)
+	{
+		int base = node * vecLen;
+		double sum = 0.0;
+		for (int i = 0; i < vecLen; i++)
+		{
+			w[base + i] += rate * (pattern[i] - w[base + i]);
+			sum += w[base + i] * w[base + i];
+		}
+		norm[node] = Math.sqrt(sum);
+		for (int p = 0; p < AXES; p++)
+		{
+			projection[node * AXES + p] += rate * (patternProjection[p] - projection[node * AXES + p]);
+		}
+		return;
+	}
+
+	/**
+	 * The best-matching unit for the pattern.
+	 */
+	public int getCluster(double[] pattern)
+	{
+		return nearest(pattern);
+	}
+
+	private int nearest(double[] pattern)
+	{
+		double patternSquared = 0.0;
+		for (int i = 0; i < vecLen; i++)
+		{
+			patternSquared += pattern[i] * pattern[i];
+		}
+		projectInto(pattern, 0, patternProjection, 0);
+
+		int winner = -1;
+		double best = Double.POSITIVE_INFINITY;
+		if (pruning && searchHint >= 0)
+		{
+			winner = searchHint;
+			best = distance(searchHint, pattern, Double.POSITIVE_INFINITY);
+		}
+		searchHint = -1;
+
+		for (int k = 0; k < nodes; k++)
+		{
+			if (k == winner)
+			{
+				continue;
+			}
+			if (pruning && winner >= 0)
+			{
+				double bound = 0.0;
+				for (int p = 0; p < AXES; p++)
+				{
+					double diff = patternProjection[p] - projection[k * AXES + p];
+					bound += diff * diff;
+				}
+				if (bound - best > PRUNING_MARGIN * (patternSquared + norm[k] * norm[k]))
+				{
+					continue;
+				}
+			}
+			double d = distance(k, pattern, pruning ? best : Double.POSITIVE_INFINITY);
+			if (d < best || (d == best && k < winner))
+			{
+				best = d;
+				winner = k;
+			}
+		} // k
+		winnerDistance = best;
+		return winner;
+	}
+
+	/**
+	 * Squared distance from node k to the pattern, or some partial sum above the limit once the sum has passed it.
+	 */
+	private double distance(int k, double[] pattern, double limit)
+	{
+		int base = k * vecLen;
+		double sum = 0.0;
+		for (int i = 0; i < vecLen; i++)
+		{
+			double diff = w[base + i] - pattern[i];
+			sum += diff * diff;
+			if (sum > limit)
+			{
+				terms += i + 1;
+				return sum;
+			}
+		}
+		terms += vecLen;
+		return sum;
+	}
+
+	/**
+	 * The best node for the pattern, leaving the second best in secondNode.
+	 */
+	private int bestTwo(double[] pattern)
+	{
+		int first = -1;
+		int second = -1;
+		double best = Double.POSITIVE_INFINITY;
+		double next = Double.POSITIVE_INFINITY;
+		for (int k = 0; k < nodes; k++)
+		{
+			double d = distance(k, pattern, next);
+			if (d < best)
+			{
+				second = first;
+				next = best;
+				first = k;
+				best = d;
+			}
+			else if (d < next)
+			{
+				second = k;
+				next = d;
+			}
+		} // k
+		secondNode = second;
+		return first;
+	}
+
+	/**
+	 * Mean distance from the patterns to their best-matching units.
+	 */
+	public double getQuantizationError(double[][] patterns)
+	{
+		double sum = 0.0;
+		for (int p = 0; p < patterns.length; p++)
+		{
+			nearest(patterns[p]);
+			sum += Math.sqrt(winnerDistance);
+		}
+		return sum / patterns.length;
+	}
+
+	/**
+	 * Fraction of the patterns whose two nearest nodes are not next to each other on the grid.
+	 */
+	public double getTopographicError(double[][] patterns)
+	{
+		int errors = 0;
+		for (int p = 0; p < patterns.length; p++)
+		{
+			int first = bestTwo(patterns[p]);
+			if (secondNode >= 0 && getGridDistance(first, secondNode) > 1.0 + PRUNING_MARGIN)
+			{
+				errors += 1;
+			}
+		}
+		return (double) errors / patterns.length;
+	}
+
+	public double getGridDistance(int nodeA, int nodeB)
+	{
+		int g = dims.length;
+		double d2 = 0.0;
+		for (int a = 0; a < g; a++)
+		{
+			double diff = position[nodeA * g + a] - position[nodeB * g + a];
+			d2 += diff * diff;
+		}
+		return Math.sqrt(d2);
+	}
+
+	private double length(int node)
+	{
+		double sum = 0.0;
+		for (int i = 0; i < vecLen; i++)
+		{
+			sum += w[node * vecLen + i] * w[node * vecLen + i];
+		}
+		return Math.sqrt(sum);
+	}
+
+	public int getNodes()
+	{
+		return nodes;
+	}
+
+	public int getVecLen()
+	{
+		return vecLen;
+	}
+
+	public int[] getDims()
+	{
+		return dims.clone();
+	}
+
+	public int getTopology()
+	{
+		return topology;
+	}
+
+	/**
+	 * Grid index of the node along grid dimension a.
+	 */
+	public int getCoordinate(int node, int a)
+	{
+		return (node / stride[a]) % dims[a];
+	}
+
+	public double getWeight(int node, int i)
+	{
+		return w[node * vecLen + i];
+	}
+
+	/**
+	 * Squared differences summed by the searches so far.
+	 */
+	public long getTerms()
+	{
+		return terms;
+	}
+
+	/**
+	 * Epochs run by training() so far.
+	 */
+	public int getEpochs()
+	{
+		return epochs;
+	}
+
+	/**
+	 * Points on a curved two-dimensional sheet in vecLen dimensions, with a little noise: a map should unfold onto
+	 * it with a low topographic error.
+	 */
+	static double[][] makePatterns(int count, int vecLen, long seed)
+	{
+		Random random = new Random(seed);
+		double a[] = new double[vecLen];
+		double b[] = new double[vecLen];
+		double c[] = new double[vecLen];
+		for (int i = 0; i < vecLen; i++)
+		{
+			a[i] = 3.0 * random.nextDouble();
+			b[i] = 3.0 * random.nextDouble();
+			c[i] = 2.0 * Math.PI * random.nextDouble();
+		}
+		double pattern[][] = new double[count][vecLen];
+		for (int p = 0; p < count; p++)
+		{
+			double u = random.nextDouble();
+			double v = random.nextDouble();
+			for (int i = 0; i < vecLen; i++)
+			{
+				pattern[p][i] = Math.sin(a[i] * u + b[i] * v + c[i]) + 0.05 * random.nextGaussian();
+			}
+		} // p
+		return pattern;
+	}
+
+	public static void main(String[] args)
+	{
+		int side = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+		int vecLen = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+		int count = args.length > 2 ? Integer.parseInt(args[2]) : 5000;
+		int epochs = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+		boolean compare = args.length > 4 && args[4].equals("compare");
+
+		// A linear start is already ordered, so a radius of a tenth of the map is enough to unfold it.
+		double pattern[][] = makePatterns(count, vecLen, 42L);
+		int topologies[] = { RECTANGULAR, HEXAGONAL };
+		for (int t = 0; t < topologies.length; t++)
+		{
+			SOM_Network som = new SOM_Network(new int[] { side, side }, topologies[t], vecLen);
+			som.initializeLinear(pattern);
+			som.setRadius(Math.max(1.0, side / 10.0), 1.0);
+			long start = System.nanoTime();
+			som.training(pattern, epochs);
+			long elapsed = System.nanoTime() - start;
+
+			System.out.println((topologies[t] == HEXAGONAL ? "Hexagonal " : "Rectangular ") + side + " x " + side + " map, " + count + " patterns of "
+					+ vecLen + ", " + epochs + " epochs: " + elapsed / 1000000 + " ms");
+			System.out.println(String.format("  terms per search %.1f of %d; quantization error %.4f, topographic error %.4f", (double) som.getTerms()
+					/ ((long) count * epochs), som.getNodes() * vecLen, som.getQuantizationError(pattern), som.getTopographicError(pattern)));
+
+			if (compare)
+			{
+				// The full search must give the very same codebook.
+				SOM_Network full = new SOM_Network(new int[] { side, side }, topologies[t], vecLen);
+				full.setPruning(false);
+				full.initializeLinear(pattern);
+				full.setRadius(Math.max(1.0, side / 10.0), 1.0);
+				start = System.nanoTime();
+				full.training(pattern, epochs);
+				elapsed = System.nanoTime() - start;
+				int mismatches = 0;
+				for (int k = 0; k < som.getNodes(); k++)
+				{
+					for (int i = 0; i < vecLen; i++)
+					{
+						if (full.getWeight(k, i) != som.getWeight(k, i))
+						{
+							mismatches += 1;
+						}
+					}
+				} // k
+				System.out.println("  full search: " + elapsed / 1000000 + " ms, weights that differ: " + mismatches);
+			}
+		} // t
+		return;
+	}
+
+}
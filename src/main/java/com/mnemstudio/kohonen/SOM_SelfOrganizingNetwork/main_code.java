@@ -69,12 +69,18 @@ public class main_code
 	{ 1, 0, 1, 0 },
 	{ 0, 1, 0, 1 } };
 
+	public static final double Weights[][] = new double[][]
+	{
+	{ 0.2, 0.6, 0.5, 0.9 },
+	{ 0.8, 0.4, 0.7, 0.3 } };
+
 	public static void main(String[] args)
 	{
 		double Alpha = 0.6;
 
 		SOM_Class1 som = new SOM_Class1(VECTORS, MAX_CLUSTERS, Alpha, MIN_ALPHA, DECAY_RATE, VEC_LEN);
-		som.Train(Pattern, Tests);
+		som.InitializeWeights(Weights);
+		som.Train(Pattern);
 		som.Test(Pattern, Tests);
 
 		System.out.println("Iterations: " + som.Iterations() + "\n");